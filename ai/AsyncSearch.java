@@ -0,0 +1,255 @@
+package ai;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import game.*;
+
+// Runs iterative deepening searches for many games at once without blocking the caller
+// submit returns straight away with a Search, whose result completes with the
+// move once the budget runs out, the result is a forced win or loss, or the
+// search is stopped. Every completed depth is published as an Update, so a
+// caller can show or use the best move so far.
+//
+// All searches share a fixed number of threads and take turns on them. A task
+// searches one depth for at most a time slice; a depth that does not finish in
+// its slice is queued again behind the other searches' tasks and searched again
+// from the start, with the slice doubled so that it finishes in the end. Tasks
+// run in the order they were queued, so a search waits for at most one slice of
+// each search queued ahead of it, however long their budgets.
+//
+// Stopping and cancelling are cooperative: the search checks a flag as often as
+// it does its deadline, every 64 nodes on small boards, and unwinds. stop keeps the best move so far
+// as the result, while cancelling the result abandons the search. Both, and the
+// deadline, apply from the first depth on: until it completes, the best move so
+// far is the empty cell nearest the centre.
+public class AsyncSearch {
+    private final ThreadPoolExecutor executor;
+    private final Supplier<Heuristic> heuristics;
+    private final Set<Search> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+    private boolean principalVariationSearch;
+    private long sliceNanos = 50_000_000;
+
+    // threads is the number of searches that can run at the same moment
+    // heuristics creates one heuristic per search
+    public AsyncSearch(int threads, Supplier<Heuristic> heuristics) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (heuristics == null) throw new IllegalArgumentException("A heuristic supplier is required");
+        this.heuristics = heuristics;
+        AtomicInteger created = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+                    Thread thread = new Thread(task, "search-" + created.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Uses Principal Variation Search in searches submitted from now on; see Minimax.setPrincipalVariationSearch
+    public void setPrincipalVariationSearch(boolean pvs) {
+        this.principalVariationSearch = pvs;
+    }
+
+    // Gives each task of searches submitted from now on at most millis to search a depth
+    // before it makes way for the others, 50 by default
+    public void setTimeSlice(long millis) {
+        if (millis < 1) throw new IllegalArgumentException("millis must be at least 1");
+        this.sliceNanos = millis * 1_000_000;
+    }
+
+    // Returns the number of searches that have not finished yet
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    // Starts a search for the player to move in a copy of the game, with budgetMillis to choose the move
+    // Throws IllegalArgumentException if the game is over and IllegalStateException after shutdown
+    public Search submit(Game game, long budgetMillis) {
+        return submit(game, budgetMillis, null);
+    }
+
+    // Like submit, but subscribes subscriber to the updates before the search
+    // starts, so that it sees every depth; subscriber may be null
+    public Search submit(Game game, long budgetMillis, Flow.Subscriber<? super Update> subscriber) {
+        if (budgetMillis < 1) throw new IllegalArgumentException("budgetMillis must be at least 1");
+        if (game.isOver()) throw new IllegalArgumentException("There are no moves to choose from");
+        if (shutdown) throw new IllegalStateException("The search service has been shut down");
+        Search search = new Search(game.copy(), System.nanoTime() + budgetMillis * 1_000_000);
+        if (subscriber != null) search.updates.subscribe(subscriber);
+        running.add(search);
+        search.schedule();
+        return search;
+    }
+
+    // Stops every running search with the best move it has found, and then the threads
+    // Searches submitted after this are refused
+    public void shutdown() {
+        shutdown = true;
+        for (Search search : running)
+            search.stop();
+        executor.shutdown();
+    }
+
+    // The best move after a completed depth
+    public static final class Update {
+        private final int depth;
+        private final Move move;
+        private final long score;
+        private final List<Move> principalVariation;
+
+        Update(int depth, Move move, long score, List<Move> principalVariation) {
+            this.depth = depth;
+            this.move = move;
+            this.score = score;
+            this.principalVariation = Collections.unmodifiableList(principalVariation);
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public Move getMove() {
+            return move;
+        }
+
+        // Returns the score for the player to move; see Minimax.WIN and Minimax.WON
+        public long getScore() {
+            return score;
+        }
+
+        public List<Move> getPrincipalVariation() {
+            return principalVariation;
+        }
+
+        @Override
+        public String toString() {
+            return "depth " + depth + ": " + move + " (" + score + ")";
+        }
+    }
+
+    // One submitted search
+    // Its tasks run one at a time, each handing its state to the next through
+    // the executor's queue, so the fields need no locking.
+    public final class Search {
+        private final Game game;
+        private final long deadline;
+        private final Minimax minimax;
+        private final AtomicBoolean stop = new AtomicBoolean();
+        private final CompletableFuture<Move> result = new CompletableFuture<>();
+        private final SubmissionPublisher<Update> updates = new SubmissionPublisher<>();
+        private final int emptyCells;
+        private Move bestMove;
+        private volatile int completedDepth;
+        // The time the next task may take, doubled each time a depth runs out of it
+        private long slice;
+
+        private Search(Game game, long deadline) {
+            this.game = game;
+            this.deadline = deadline;
+            this.slice = sliceNanos;
+            this.minimax = new Minimax(1, heuristics.get(), true);
+            minimax.setPrincipalVariationSearch(principalVariationSearch);
+            minimax.setStopFlag(stop);
+            int empty = 0;
+            for (int row = 0; row < game.getSize(); row++)
+                for (int col = 0; col < game.getSize(); col++)
+                    if (game.getPiece(row, col) == PieceColour.NONE) empty++;
+            this.emptyCells = empty;
+            // Cancelling the result aborts the depth being searched
+            result.whenComplete((move, failure) -> {
+                if (result.isCancelled()) stop.set(true);
+            });
+        }
+
+        // Completes with the chosen move, or exceptionally if the search failed
+        // Cancelling it abandons the search.
+        public CompletableFuture<Move> result() {
+            return result;
+        }
+
+        // Publishes an Update after each completed depth and completes when the search ends
+        // A subscriber that cannot keep up misses updates rather than slowing the search.
+        public Flow.Publisher<Update> updates() {
+            return updates;
+        }
+
+        // Ends the search early with the best move found so far
+        // Before the first depth completes, that is the empty cell nearest the centre.
+        public void stop() {
+            stop.set(true);
+        }
+
+        // Returns the deepest depth completed so far
+        public int getCompletedDepth() {
+            return completedDepth;
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this::step);
+            } catch (RejectedExecutionException e) {
+                finish();
+            }
+        }
+
+        // Searches one depth deeper within the slice, and queues the next task unless the search is over
+        private void step() {
+            if (result.isDone()) {
+                finish();
+                return;
+            }
+            int depth = completedDepth + 1;
+            try {
+                if (bestMove == null) {
+                    // A move to return if even depth 1 is stopped or runs out of time
+                    minimax.startMove();
+                    bestMove = Minimax.centreMove(game);
+                }
+                bestMove = minimax.searchRoot(game, depth, Math.min(deadline, System.nanoTime() + slice));
+            } catch (Minimax.SearchAborted e) {
+                if (stop.get() || System.nanoTime() >= deadline) {
+                    finish();
+                } else {
+                    // Only the slice ran out: make way, and try the depth again with more time
+                    slice *= 2;
+                    schedule();
+                }
+                return;
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+                finish();
+                return;
+            }
+            completedDepth = depth;
+            long score = minimax.getLastScore();
+            updates.offer(new Update(depth, bestMove, score, minimax.getPrincipalVariation()),
+                    (subscriber, update) -> false);
+            if (depth >= emptyCells || Math.abs(score) >= Minimax.WON || stop.get()
+                    || System.nanoTime() >= deadline) {
+                finish();
+            } else {
+                schedule();
+            }
+        }
+
+        private void finish() {
+            if (bestMove != null) result.complete(bestMove);
+            else result.cancel(false);
+            updates.close();
+            running.remove(this);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package ai;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import game.*;
+
+// Scores a stream of positions on several threads and hands each result to a
+// sink as soon as it is ready
+//
+// The work runs as a pipeline: the calling thread takes positions from the
+// iterator and queues them, worker threads score them, and one writer thread
+// passes the results to the sink. Both queues are bounded, so a slow sink holds
+// up the workers and slow workers hold up the reading, and at most a few queues'
+// worth of positions are in memory whatever the length of the stream.
+//
+// Each worker has its own heuristic and, for a search depth above 0, its own
+// in-place Minimax, so neither needs to be thread-safe. Results reach the sink
+// in the order they finish, not the order of the positions, each carrying the
+// index of its position. The sink is only ever called from the writer thread.
+public class BatchAnalysis {
+    // Marks the end of the positions for a worker, and the end of a worker's results for the writer
+    private static final Object END = new Object();
+
+    private final int threads;
+    private final Supplier<Heuristic> heuristics;
+    private final int queueCapacity;
+    private int depth;
+    private Supplier<AI> ais;
+
+    // Receives the results, one at a time
+    public interface Sink {
+        void write(Result result) throws IOException;
+    }
+
+    // The analysis of one position
+    public static final class Result {
+        private final long index;
+        private final PieceColour player;
+        private final long score;
+        private final Move move;
+        private final PieceColour winner;
+
+        private Result(long index, PieceColour player, long score, Move move, PieceColour winner) {
+            this.index = index;
+            this.player = player;
+            this.score = score;
+            this.move = move;
+            this.winner = winner;
+        }
+
+        // Returns the position's place in the stream, from 0
+        public long getIndex() {
+            return index;
+        }
+
+        // Returns the player to move, inferred from the piece counts
+        public PieceColour getPlayer() {
+            return player;
+        }
+
+        // Returns the heuristic or search score for the player to move, or 0 if the game is over
+        public long getScore() {
+            return score;
+        }
+
+        // Returns the move chosen by the search or AI, or null if there is none
+        public Move getMove() {
+            return move;
+        }
+
+        // Returns the winner if the game is over, and NONE otherwise
+        public PieceColour getWinner() {
+            return winner;
+        }
+
+        // Formats the result as comma-separated index, player, score, row, col and winner
+        // with the row and column left empty if there is no move
+        @Override
+        public String toString() {
+            return index + "," + player + "," + score + "," + (move == null ? "," : move.getRow() + "," + move.getCol())
+                    + "," + winner;
+        }
+    }
+
+    // threads score positions, each with a heuristic from heuristics
+    // queueCapacity bounds the positions waiting to be scored and the results waiting to be written
+    public BatchAnalysis(int threads, Supplier<Heuristic> heuristics, int queueCapacity) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (heuristics == null) throw new IllegalArgumentException("A heuristic supplier is required");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+        this.threads = threads;
+        this.heuristics = heuristics;
+        this.queueCapacity = queueCapacity;
+    }
+
+    // Scores each position with an in-place Minimax search of the depth, which
+    // also gives the best move, or with the heuristic alone if depth is 0
+    public void setSearchDepth(int depth) {
+        if (depth < 0) throw new IllegalArgumentException("depth must not be negative");
+        this.depth = depth;
+    }
+
+    // Also asks an AI from ais, one per worker, for each position's move, which
+    // replaces the search's, or stops asking if ais is null
+    public void setAI(Supplier<AI> ais) {
+        this.ais = ais;
+    }
+
+    // A position waiting to be scored
+    private static final class Task {
+        final long index;
+        final Grid grid;
+
+        Task(long index, Grid grid) {
+            this.index = index;
+            this.grid = grid;
+        }
+    }
+
+    // Scores every position and writes the results to the sink, returning the number of positions
+    // Throws IOException if reading positions or the sink does, after stopping the pipeline
+    public long run(Iterator<? extends Grid> positions, Sink sink) throws IOException {
+        BlockingQueue<Object> tasks = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> results = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        long count = 0;
+        try {
+            for (int i = 0; i < threads; i++)
+                pool.execute(() -> work(tasks, results, failure));
+            Future<?> writer = pool.submit(() -> {
+                write(results, sink, failure);
+                return null;
+            });
+            try {
+                while (failure.get() == null && positions.hasNext())
+                    tasks.put(new Task(count++, positions.next()));
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            for (int i = 0; i < threads; i++)
+                tasks.put(END);
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analysing", e);
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        Throwable thrown = failure.get();
+        if (thrown instanceof IOException) throw (IOException) thrown;
+        if (thrown instanceof UncheckedIOException) throw ((UncheckedIOException) thrown).getCause();
+        if (thrown instanceof RuntimeException) throw (RuntimeException) thrown;
+        if (thrown instanceof Error) throw (Error) thrown;
+        if (thrown != null) throw new IllegalStateException("The analysis failed", thrown);
+        return count;
+    }
+
+    // Scores positions until the END marker, and after a failure just drains them
+    // The writer counts the workers' END markers, so every worker sends one however it stops
+    private void work(BlockingQueue<Object> tasks, BlockingQueue<Object> results, AtomicReference<Throwable> failure) {
+        try {
+            Heuristic heuristic = null;
+            Minimax search = null;
+            AI ai = null;
+            try {
+                heuristic = heuristics.get();
+                search = depth > 0 ? new Minimax(depth, heuristic, true) : null;
+                ai = ais == null ? null : ais.get();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+            for (Object next = tasks.take(); next != END; next = tasks.take()) {
+                if (failure.get() != null) continue;
+                try {
+                    results.put(analyse((Task) next, heuristic, search, ai));
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                results.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Result analyse(Task task, Heuristic heuristic, Minimax search, AI ai) {
+        Game game = new GameImpl(task.grid);
+        PieceColour player = game.currentPlayer();
+        if (game.isOver()) return new Result(task.index, player, 0, null, game.winner());
+        long score;
+        Move move = null;
+        if (search != null) {
+            search.startMove();
+            move = search.searchRoot(game, depth, 0);
+            score = search.getLastScore();
+        } else {
+            score = heuristic.score(game);
+        }
+        if (ai != null) move = ai.getCurrentPlayerMove(game);
+        return new Result(task.index, player, score, move, PieceColour.NONE);
+    }
+
+    // Passes results to the sink until every worker has finished, and after a failure just drains them
+    private void write(BlockingQueue<Object> results, Sink sink, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        int finished = 0;
+        while (finished < threads) {
+            Object next = results.take();
+            if (next == END) {
+                finished++;
+            } else if (failure.get() == null) {
+                try {
+                    sink.write((Result) next);
+                } catch (IOException | RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+    }
+
+    // Returns the positions of every record the reader has left, each after
+    // every move of its game, so a record of n moves gives n positions
+    // A failure to read is thrown from the iterator as an UncheckedIOException,
+    // which run turns back into the IOException.
+    public static Iterator<Grid> positions(GameRecordReader reader) {
+        return new Iterator<>() {
+            private Game game;
+            private int played;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (game == null || played == reader.getMoveCount()) {
+                        if (!reader.next()) return false;
+                        game = new GameImpl(reader.getSize());
+                        played = 0;
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Grid next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int cell = reader.getCell(played++);
+                game.makeMove(new MoveImpl(cell / game.getSize(), cell % game.getSize()));
+                return game.getGrid();
+            }
+        };
+    }
+
+    // Arguments: records [output] [threads] [depth]
+    // Scores every position of a file of game records and writes a line per
+    // position, by default to analysis.csv with the heuristic alone on every core
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Arguments: records [output] [threads] [depth]");
+            return;
+        }
+        Path output = Path.of(args.length > 1 ? args[1] : "analysis.csv");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        BatchAnalysis analysis = new BatchAnalysis(threads, DistanceHeuristic::new, 1024);
+        analysis.setSearchDepth(depth);
+        long start = System.nanoTime();
+        long count;
+        try (GameRecordReader reader = new GameRecordReader(Path.of(args[0]));
+                BufferedWriter out = Files.newBufferedWriter(output)) {
+            out.write("index,player,score,row,col,winner");
+            out.newLine();
+            count = analysis.run(positions(reader), result -> {
+                out.write(result.toString());
+                out.newLine();
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d positions in %.2f s, %.0f positions/s, written to %s%n", count, seconds,
+                count / seconds, output);
+    }
+}
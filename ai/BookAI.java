@@ -0,0 +1,29 @@
+package ai;
+
+import game.*;
+
+// An AI that plays from an opening book while it can and asks another AI otherwise
+public class BookAI implements AI {
+    private final OpeningBook book;
+    private final AI fallback;
+    private long bookMoves;
+
+    // fallback chooses the moves of positions that are not in the book
+    public BookAI(OpeningBook book, AI fallback) {
+        this.book = book;
+        this.fallback = fallback;
+    }
+
+    // Returns the number of moves that came from the book
+    public long getBookMoves() {
+        return bookMoves;
+    }
+
+    @Override
+    public Move getCurrentPlayerMove(Game game) {
+        Move move = book.lookup(game);
+        if (move == null) return fallback.getCurrentPlayerMove(game);
+        bookMoves++;
+        return move;
+    }
+}
@@ -0,0 +1,250 @@
+package ai;
+
+import java.util.Arrays;
+
+import game.*;
+
+// Scores a position by how much closer the player to move is to a path than the opponent
+// A player's distance is the least number of empty cells they would have to fill
+// to connect top to bottom or left to right, and the score is the opponent's
+// distance minus the player's, so blocking counts as much as building.
+//
+// The distances come from four fields, one per player and direction, holding
+// for every cell the cheapest way to reach it from the starting edge, where the
+// player's pieces cost 0, empty cells 1 and the opponent's pieces cannot be
+// crossed. A move only lowers the mover's fields and only raises the opponent's,
+// so moveMade repairs them locally: a cost that drops is spread to the cells it
+// improves, and a blocked cell resets the cells whose cheapest way could run
+// through it and works them out again from their neighbours. Every change is
+// logged, so moveUndone puts the fields back exactly.
+//
+// score also works on its own: when the game is not the position the fields
+// describe, it rebuilds them. An instance is not safe to share between threads.
+public class DistanceHeuristic implements IncrementalHeuristic {
+    private static final int INFINITY = PaddedBoard.INFINITY;
+    private static final int FIELDS = 4;
+    private static final int TOP = 1, LEFT = 2, BOTTOM = 4, RIGHT = 8;
+
+    private PaddedBoard board;
+    // Copies of the board's fields, used on every step
+    private int size;
+    private int width;
+    private int cells;
+    private int[] pieces;
+    private int[] edges;
+    // Field f is for player f / 2 + 1 (a PieceColour ordinal) from the top edge if
+    // f is even and the left edge if odd, with cell c at dist[f * cells + c]
+    private int[] dist;
+
+    // Undo log of (index into dist, old value) pairs, and where each move's entries start
+    private int[] log = new int[256];
+    private int logLength;
+    private int[] marks = new int[64];
+    private int markCount;
+    // The position the fields describe, and whether they describe one at all
+    private long hash;
+    private boolean valid;
+
+    // Work buffers: a queue of cells to spread from, and the cells reset by a block
+    private int[] queue;
+    private int head, queued;
+    private boolean[] inQueue;
+    private int[] affected;
+    private boolean[] marked;
+
+    // Allocates the buffers for a board size
+    private void prepare(int size) {
+        if (board != null && board.size == size) return;
+        board = new PaddedBoard(size);
+        this.size = size;
+        width = board.width;
+        cells = board.cells;
+        pieces = board.pieces;
+        edges = new int[cells];
+        dist = new int[FIELDS * cells];
+        queue = new int[cells];
+        head = queued = 0;
+        inQueue = new boolean[cells];
+        affected = new int[cells];
+        marked = new boolean[cells];
+        for (int i = 1; i <= size; i++) {
+            edges[width + i] |= TOP;
+            edges[size * width + i] |= BOTTOM;
+            edges[i * width + 1] |= LEFT;
+            edges[i * width + size] |= RIGHT;
+        }
+    }
+
+    private void set(int index, int value) {
+        if (logLength == log.length) log = Arrays.copyOf(log, log.length * 2);
+        log[logLength++] = index;
+        log[logLength++] = dist[index];
+        dist[index] = value;
+    }
+
+    private void enqueue(int cell) {
+        if (inQueue[cell]) return;
+        inQueue[cell] = true;
+        int tail = head + queued++;
+        queue[tail < cells ? tail : tail - cells] = cell;
+    }
+
+    // Works out a cell of field f from its neighbours and whether it is on the starting edge
+    private int entry(int f, int cell) {
+        int cost = board.cost(f / 2 + 1, cell);
+        if (cost < 0) return INFINITY;
+        int base = f * cells;
+        int best = (edges[cell] & ((f & 1) == 0 ? TOP : LEFT)) != 0 ? 0 : INFINITY;
+        best = Math.min(best, Math.min(Math.min(dist[base + cell - width], dist[base + cell + width]),
+                Math.min(dist[base + cell - 1], dist[base + cell + 1])));
+        return best >= INFINITY ? INFINITY : best + cost;
+    }
+
+    // Lowers the cells of field f reachable more cheaply through the queued cells
+    // Cells may be queued more than once, which is fine on boards this small
+    private void spread(int f) {
+        int player = f / 2 + 1, base = f * cells;
+        while (queued > 0) {
+            int cell = queue[head];
+            head = head + 1 == cells ? 0 : head + 1;
+            queued--;
+            inQueue[cell] = false;
+            int distance = dist[base + cell];
+            relax(player, base, cell - width, distance);
+            relax(player, base, cell + width, distance);
+            relax(player, base, cell - 1, distance);
+            relax(player, base, cell + 1, distance);
+        }
+    }
+
+    private void relax(int player, int base, int cell, int distance) {
+        int cost = board.cost(player, cell);
+        if (cost < 0 || distance + cost >= dist[base + cell]) return;
+        set(base + cell, distance + cost);
+        enqueue(cell);
+    }
+
+    // Updates field f after the cell became cheaper for its player
+    private void lower(int f, int cell) {
+        int distance = entry(f, cell);
+        if (distance >= dist[f * cells + cell]) return;
+        set(f * cells + cell, distance);
+        enqueue(cell);
+        spread(f);
+    }
+
+    // Updates field f after its player can no longer cross the cell
+    private void block(int f, int cell) {
+        int player = f / 2 + 1, base = f * cells;
+        if (dist[base + cell] >= INFINITY) return;
+        // The cells that may have had their cheapest way through the cell: those
+        // whose distance is exactly what a way through a reset neighbour gives
+        int count = 0;
+        affected[count++] = cell;
+        marked[cell] = true;
+        for (int i = 0; i < count; i++) {
+            int from = affected[i], distance = dist[base + from];
+            for (int offset : board.neighbours) {
+                int next = from + offset;
+                int cost = board.cost(player, next);
+                if (cost < 0 || marked[next] || dist[base + next] != distance + cost) continue;
+                marked[next] = true;
+                affected[count++] = next;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            set(base + affected[i], INFINITY);
+            marked[affected[i]] = false;
+        }
+        // Work them out again from the cells that kept their distances
+        for (int i = 1; i < count; i++) {
+            int distance = entry(f, affected[i]);
+            if (distance >= INFINITY) continue;
+            set(base + affected[i], distance);
+            enqueue(affected[i]);
+        }
+        spread(f);
+    }
+
+    @Override
+    public void reset(Game game) {
+        prepare(game.getSize());
+        board.load(game);
+        Arrays.fill(dist, INFINITY);
+        for (int f = 0; f < FIELDS; f++) {
+            for (int i = 1; i <= size; i++) {
+                int cell = (f & 1) == 0 ? width + i : i * width + 1;
+                int cost = board.cost(f / 2 + 1, cell);
+                if (cost < 0) continue;
+                dist[f * cells + cell] = cost;
+                enqueue(cell);
+            }
+            spread(f);
+        }
+        logLength = 0;
+        markCount = 0;
+        hash = game.hashKey();
+        valid = true;
+    }
+
+    @Override
+    public void moveMade(Game game, Move move) {
+        if (!valid) return;
+        if (game.getSize() != size) {
+            valid = false;
+            return;
+        }
+        int cell = (move.getRow() + 1) * width + move.getCol() + 1;
+        PieceColour mover = game.getPiece(move.getRow(), move.getCol());
+        if (markCount == marks.length) marks = Arrays.copyOf(marks, marks.length * 2);
+        marks[markCount++] = logLength;
+        pieces[cell] = mover.ordinal();
+        hash ^= Zobrist.key(mover, move.getRow() * size + move.getCol()) ^ Zobrist.SIDE;
+        for (int f = 0; f < FIELDS; f++) {
+            if (f / 2 + 1 == mover.ordinal()) lower(f, cell);
+            else block(f, cell);
+        }
+    }
+
+    @Override
+    public void moveUndone(Game game, Move move) {
+        if (!valid) return;
+        if (markCount == 0 || game.getSize() != size) {
+            valid = false;
+            return;
+        }
+        int mark = marks[--markCount];
+        while (logLength > mark) {
+            logLength -= 2;
+            dist[log[logLength]] = log[logLength + 1];
+        }
+        int cell = (move.getRow() + 1) * width + move.getCol() + 1;
+        hash ^= Zobrist.key(PieceColour.values()[pieces[cell]], move.getRow() * size + move.getCol())
+                ^ Zobrist.SIDE;
+        pieces[cell] = 0;
+    }
+
+    // Returns the player's distance to a path, or size * size if they cannot make one
+    private int distance(int player) {
+        int best = INFINITY;
+        for (int f = 2 * (player - 1); f < 2 * player; f++) {
+            int base = f * cells;
+            for (int i = 1; i <= size; i++)
+                best = Math.min(best, dist[base + ((f & 1) == 0 ? size * width + i : i * width + size)]);
+        }
+        return Math.min(best, size * size);
+    }
+
+    @Override
+    public int score(Game game) {
+        if (!valid || game.getSize() != size || game.hashKey() != hash) reset(game);
+        int player = game.currentPlayer().ordinal();
+        return distance(3 - player) - distance(player);
+    }
+
+    // Returns the player's distance to a path, as used by score
+    public int distance(Game game, PieceColour player) {
+        if (!valid || game.getSize() != size || game.hashKey() != hash) reset(game);
+        return distance(player.ordinal());
+    }
+}
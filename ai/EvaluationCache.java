@@ -0,0 +1,125 @@
+package ai;
+
+import java.util.Arrays;
+
+// A fixed-size cache of heuristic scores keyed by Zobrist hash
+// Alpha-beta reaches the same leaves again and again, within a search through
+// transpositions and across the iterations and moves of a game, and a score
+// looked up here costs far less than working it out again.
+//
+// Entries are grouped in buckets of WAYS slots, and a key can only live in its
+// own bucket. When the bucket is full, an entry is evicted with the CLOCK
+// (second chance) policy: a hand sweeps the bucket, clearing the referenced
+// bit of each entry it passes, and evicts the first entry whose bit was
+// already clear. A lookup sets the bit, so entries that are read again survive
+// a sweep, while new entries start with the bit clear and leaves seen only once
+// are the first to go.
+//
+// Keys and entries live in two parallel long arrays, and the cache never grows.
+// Each entry packs the score in its low 32 bits, then an occupied and a
+// referenced bit. An instance is not safe to share between threads.
+public class EvaluationCache {
+    // Returned by probe for a key that is not in the cache
+    public static final long MISS = Long.MIN_VALUE;
+
+    private static final int WAYS = 4;
+    private static final long OCCUPIED = 1L << 32;
+    private static final long REFERENCED = 1L << 33;
+
+    private final long[] keys;
+    private final long[] entries;
+    // The position of the CLOCK hand in each bucket
+    private final byte[] hands;
+    private final int mask;
+    private long hits, misses, evictions;
+
+    // Creates a cache using about the given number of megabytes
+    // The number of entries is rounded down to a power of two, 16 bytes each
+    public EvaluationCache(int megabytes) {
+        if (megabytes < 1) throw new IllegalArgumentException("The cache needs at least 1 megabyte");
+        long slots = Long.highestOneBit(((long) megabytes << 20) / 16);
+        slots = Math.min(slots, 1 << 30);
+        keys = new long[(int) slots];
+        entries = new long[(int) slots];
+        hands = new byte[(int) slots / WAYS];
+        mask = hands.length - 1;
+    }
+
+    // Returns the number of scores the cache can hold
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ key >>> 32) & mask) * WAYS;
+    }
+
+    // Returns the score stored for the key, or MISS
+    public long probe(long key) {
+        int first = bucket(key);
+        for (int i = first; i < first + WAYS; i++) {
+            long entry = entries[i];
+            if ((entry & OCCUPIED) != 0 && keys[i] == key) {
+                entries[i] = entry | REFERENCED;
+                hits++;
+                return (int) entry;
+            }
+        }
+        misses++;
+        return MISS;
+    }
+
+    // Stores the score for the key, evicting an entry of its bucket if it is full
+    public void store(long key, int score) {
+        int first = bucket(key);
+        int slot = -1;
+        for (int i = first; i < first + WAYS; i++) {
+            if ((entries[i] & OCCUPIED) == 0) {
+                if (slot < 0) slot = i;
+            } else if (keys[i] == key) {
+                slot = i;
+                break;
+            }
+        }
+        if (slot < 0) {
+            int hand = hands[first / WAYS];
+            while ((entries[first + hand] & REFERENCED) != 0) {
+                entries[first + hand] &= ~REFERENCED;
+                hand = (hand + 1) % WAYS;
+            }
+            slot = first + hand;
+            hands[first / WAYS] = (byte) ((hand + 1) % WAYS);
+            evictions++;
+        }
+        keys[slot] = key;
+        entries[slot] = (score & 0xFFFFFFFFL) | OCCUPIED;
+    }
+
+    // Returns the number of probes that found their key
+    public long getHits() {
+        return hits;
+    }
+
+    // Returns the number of probes that did not find their key
+    public long getMisses() {
+        return misses;
+    }
+
+    // Returns the number of entries evicted to make room for new ones
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // Returns the fraction of probes that found their key, or 0 if there were none
+    public double getHitRate() {
+        long probes = hits + misses;
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    // Removes every entry and resets the counters
+    public void clear() {
+        Arrays.fill(entries, 0);
+        Arrays.fill(hands, (byte) 0);
+        hits = misses = evictions = 0;
+    }
+}
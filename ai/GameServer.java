@@ -0,0 +1,382 @@
+package ai;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import game.*;
+
+// A local HTTP server hosting many games at once, each a session with an id
+//
+//   POST   /games?size=N                 creates a game and answers its id (201)
+//   GET    /games/{id}                   answers the game's state
+//   POST   /games/{id}/moves?row=R&col=C plays a move for the player to move
+//   POST   /games/{id}/ai?millis=M       has the AI choose and play a move, answered as "row col"
+//   DELETE /games/{id}                   ends the session
+//
+// Bodies are plain text. A bad request answers 400, an unknown game 404, a move
+// in a finished game 409, and a session with too many AI moves waiting 429.
+//
+// The requests themselves are handled on a small fixed pool of threads, which
+// never wait for a search. AI moves are searched by an AsyncSearch, and each
+// session has its own queue of them: a session has at most one search running,
+// and the next starts when it ends. Searches take turns in time slices on the
+// shared pool, so a session asking for many moves cannot hold up the others.
+// A search works on a copy of the game, and if a move is played in the game
+// while it runs, its move is thrown away and the request answers 409.
+//
+// Sessions that have not been used for the timeout, and are not searching, are
+// evicted by a background sweep. A request racing with the sweep either keeps
+// its session alive or answers 404, never acting on an evicted game.
+public class GameServer {
+    // The most AI moves a session can have waiting behind the one being searched
+    public static final int MAX_WAITING = 16;
+    // The most time an AI move can be given
+    public static final long MAX_MILLIS = 10_000;
+    // The largest board a game can have
+    // The AI's depth 1 grows with the fourth power of the size, and at 64x64 it takes
+    // well under a second with the heuristics here, so a search can always finish it
+    // within MAX_MILLIS rather than fall back on an unsearched move.
+    public static final int MAX_SIZE = 64;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final AsyncSearch search;
+    private final ScheduledExecutorService sweeper;
+    private final long timeoutNanos;
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong evicted = new AtomicLong();
+
+    private static final class Session {
+        final long id;
+        final Game game;
+        final ArrayDeque<Waiting> waiting = new ArrayDeque<>();
+        boolean searching;
+        volatile long lastUsed = System.nanoTime();
+
+        Session(long id, int size) {
+            this.id = id;
+            game = new GameImpl(size);
+        }
+    }
+
+    // An AI move request waiting for its session's search to end
+    private static final class Waiting {
+        final HttpExchange exchange;
+        final long millis;
+
+        Waiting(HttpExchange exchange, long millis) {
+            this.exchange = exchange;
+            this.millis = millis;
+        }
+    }
+
+    // Listens on the loopback address at port, or any free port if port is 0
+    // handlerThreads handle requests, searchThreads search AI moves, and sessions
+    // unused for timeoutMillis are evicted
+    public GameServer(int port, int handlerThreads, int searchThreads, long timeoutMillis,
+            Supplier<Heuristic> heuristics) throws IOException {
+        if (handlerThreads < 1) throw new IllegalArgumentException("handlerThreads must be at least 1");
+        if (timeoutMillis < 1) throw new IllegalArgumentException("timeoutMillis must be at least 1");
+        this.search = new AsyncSearch(searchThreads, heuristics);
+        this.timeoutNanos = timeoutMillis * 1_000_000;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        this.handlers = Executors.newFixedThreadPool(handlerThreads);
+        server.setExecutor(handlers);
+        server.createContext("/games", this::handle);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        long period = Math.max(1, timeoutNanos / 2);
+        sweeper.scheduleAtFixedRate(this::evictStale, period, period, TimeUnit.NANOSECONDS);
+        server.start();
+    }
+
+    // Stops accepting requests, ends the searches and stops every thread
+    public void stop() {
+        server.stop(0);
+        sweeper.shutdownNow();
+        search.shutdown();
+        handlers.shutdown();
+    }
+
+    // Returns the port the server listens on
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // Returns the number of sessions evicted for being unused
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    // Removes the sessions that are unused and not searching
+    // The check and the removal are made under the session's lock, so a request
+    // that takes the lock first keeps the session, and one that takes it after
+    // finds it gone; see hosted.
+    private void evictStale() {
+        long now = System.nanoTime();
+        for (Session session : sessions.values()) {
+            synchronized (session) {
+                if (session.searching || now - session.lastUsed < timeoutNanos) continue;
+                if (sessions.remove(session.id, session)) evicted.incrementAndGet();
+            }
+        }
+    }
+
+    // True if the session has not been evicted or deleted
+    // Call it holding the session's lock, so that the answer holds until it is released.
+    private boolean hosted(Session session) {
+        return sessions.get(session.id) == session;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            // parts[0] is empty and parts[1] is "games"
+            if (parts.length < 2 || !parts[1].equals("games")) {
+                reply(exchange, 404, "Unknown request");
+                return;
+            }
+            if (parts.length == 2) {
+                if (!method.equals("POST")) reply(exchange, 405, "Use POST to create a game");
+                else create(exchange, query);
+                return;
+            }
+            Session session;
+            try {
+                session = sessions.get(Long.parseLong(parts[2]));
+            } catch (NumberFormatException e) {
+                session = null;
+            }
+            if (session == null || parts.length > 4) {
+                reply(exchange, 404, "No such game");
+                return;
+            }
+            session.lastUsed = System.nanoTime();
+            String action = parts.length == 4 ? parts[3] : "";
+            switch (method + " " + action) {
+                case "GET " -> {
+                    String state;
+                    synchronized (session) {
+                        state = hosted(session) ? state(session.game) : null;
+                    }
+                    if (state == null) reply(exchange, 404, "No such game");
+                    else reply(exchange, 200, state);
+                }
+                case "DELETE " -> {
+                    boolean deleted;
+                    synchronized (session) {
+                        deleted = sessions.remove(session.id, session);
+                    }
+                    if (deleted) reply(exchange, 200, "Deleted");
+                    else reply(exchange, 404, "No such game");
+                }
+                case "POST moves" -> move(exchange, session, query);
+                case "POST ai" -> aiMove(exchange, session, query);
+                default -> reply(exchange, 404, "Unknown request");
+            }
+        } catch (IllegalArgumentException e) {
+            reply(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void create(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int size = number(query, "size", 5);
+        if (size < 1 || size > MAX_SIZE) throw new IllegalArgumentException("size must be between 1 and " + MAX_SIZE);
+        long id = nextId.getAndIncrement();
+        sessions.put(id, new Session(id, size));
+        reply(exchange, 201, Long.toString(id));
+    }
+
+    private void move(HttpExchange exchange, Session session, Map<String, String> query) throws IOException {
+        Move move = new MoveImpl(number(query, "row", -1), number(query, "col", -1));
+        int status;
+        String body;
+        synchronized (session) {
+            if (!hosted(session)) {
+                status = 404;
+                body = "No such game";
+            } else if (session.game.isOver()) {
+                status = 409;
+                body = "The game is over";
+            } else {
+                // Throws IllegalArgumentException for an invalid move
+                session.game.makeMove(move);
+                status = 200;
+                body = state(session.game);
+            }
+        }
+        reply(exchange, status, body);
+    }
+
+    private void aiMove(HttpExchange exchange, Session session, Map<String, String> query) throws IOException {
+        long millis = number(query, "millis", 100);
+        if (millis < 1 || millis > MAX_MILLIS)
+            throw new IllegalArgumentException("millis must be between 1 and " + MAX_MILLIS);
+        Waiting request = new Waiting(exchange, millis);
+        int status = 0;
+        synchronized (session) {
+            if (!hosted(session)) {
+                status = 404;
+            } else if (session.searching) {
+                if (session.waiting.size() < MAX_WAITING) {
+                    session.waiting.add(request);
+                    return;
+                }
+                status = 429;
+            } else {
+                session.searching = true;
+            }
+        }
+        if (status == 404) reply(exchange, 404, "No such game");
+        else if (status == 429) reply(exchange, 429, "Too many AI moves waiting");
+        else startSearch(session, request);
+    }
+
+    // Searches for the request, and then for each request waiting behind it, until the queue is empty
+    private void startSearch(Session session, Waiting request) {
+        while (request != null) {
+            Game copy;
+            synchronized (session) {
+                copy = session.game.isOver() ? null : session.game.copy();
+            }
+            if (copy != null) {
+                Waiting searching = request;
+                try {
+                    search.submit(copy, request.millis).result()
+                            .whenComplete((move, failure) -> searched(session, searching, copy, move, failure));
+                    return;
+                } catch (IllegalStateException e) {
+                    quietReply(request.exchange, 503, "The server is stopping");
+                }
+            } else {
+                quietReply(request.exchange, 409, "The game is over");
+            }
+            request = next(session);
+        }
+    }
+
+    private void searched(Session session, Waiting request, Game searched, Move move, Throwable failure) {
+        int status;
+        String body;
+        synchronized (session) {
+            if (failure != null) {
+                status = 500;
+                body = "The search failed";
+            } else if (session.game.isOver() || session.game.hashKey() != searched.hashKey()) {
+                status = 409;
+                body = "The game changed during the search";
+            } else {
+                session.game.makeMove(move);
+                status = 200;
+                body = move.getRow() + " " + move.getCol();
+            }
+        }
+        session.lastUsed = System.nanoTime();
+        quietReply(request.exchange, status, body);
+        startSearch(session, next(session));
+    }
+
+    // Takes the session's next waiting request, or marks it idle and returns null
+    private static Waiting next(Session session) {
+        synchronized (session) {
+            Waiting next = session.waiting.poll();
+            if (next == null) session.searching = false;
+            return next;
+        }
+    }
+
+    // Writes the board as rows of W, B and . after a header
+    private static String state(Game game) {
+        StringBuilder text = new StringBuilder();
+        text.append("size ").append(game.getSize()).append('\n');
+        text.append("player ").append(game.currentPlayer()).append('\n');
+        text.append("over ").append(game.isOver()).append('\n');
+        text.append("winner ").append(game.winner()).append('\n');
+        for (int row = 0; row < game.getSize(); row++) {
+            for (int col = 0; col < game.getSize(); col++) {
+                PieceColour piece = game.getPiece(row, col);
+                text.append(piece == PieceColour.WHITE ? 'W' : piece == PieceColour.BLACK ? 'B' : '.');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> values = new HashMap<>();
+        if (raw == null) return values;
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) values.put(pair.substring(0, equals), pair.substring(equals + 1));
+        }
+        return values;
+    }
+
+    private static int number(Map<String, String> query, String name, int otherwise) {
+        String value = query.get(name);
+        if (value == null) return otherwise;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Replies from a search thread, where a client that has gone away is no one's problem
+    private static void quietReply(HttpExchange exchange, int status, String body) {
+        try {
+            reply(exchange, status, body);
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    // Arguments: [port] [search threads] [timeout seconds]
+    // By default port 8080, a search thread per core and a 5 minute timeout
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long timeout = args.length > 2 ? Long.parseLong(args[2]) : 300;
+        GameServer server = new GameServer(port, 4, threads, timeout * 1000, DistanceHeuristic::new);
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + "/games");
+    }
+}
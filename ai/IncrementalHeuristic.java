@@ -0,0 +1,18 @@
+package ai;
+
+import game.*;
+
+// A heuristic that keeps its own state in step with a game as moves are made
+// and undone, so that score only reads it rather than working it out again
+// The in-place Minimax search calls reset at the root and then moveMade and
+// moveUndone around every move it makes on its copy of the game.
+public interface IncrementalHeuristic extends Heuristic {
+    // Builds the state for the position from scratch
+    void reset(Game game);
+
+    // Updates the state after move has been made on game
+    void moveMade(Game game, Move move);
+
+    // Updates the state after move has been undone on game
+    void moveUndone(Game game, Move move);
+}
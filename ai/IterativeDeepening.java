@@ -0,0 +1,159 @@
+package ai;
+
+import java.util.List;
+
+import game.*;
+
+// An AI that searches for a fixed amount of wall-clock time per move
+// It runs the in-place Minimax search to depth 1, 2, 3, ... until the budget
+// runs out and returns the best move of the last depth that completed.
+// Each iteration tries the previous iteration's principal variation first,
+// so the deeper searches prune well and the time spent on shallow ones is small.
+//
+// With an aspiration window, each iteration after the first searches a narrow
+// window around the previous iteration's score, which cuts off far more. A
+// score outside the window is only a bound, so the iteration is searched again
+// with the window doubled on the side that failed.
+public class IterativeDeepening implements AI {
+    private final long budgetNanos;
+    private final Minimax search;
+    private final TranspositionTable table;
+    private int completedDepth;
+    private long lastScore;
+    private long aspirationWindow;
+    private long aspirationFailures;
+
+    // budgetMillis is the time allowed for each move
+    // heuristic is used to estimate the quality of a non-terminal game state
+    public IterativeDeepening(long budgetMillis, Heuristic heuristic) {
+        this(budgetMillis, heuristic, null);
+    }
+
+    // table is kept across iterations and moves, and may be null
+    public IterativeDeepening(long budgetMillis, Heuristic heuristic, TranspositionTable table) {
+        if (budgetMillis < 1) throw new IllegalArgumentException("budgetMillis must be at least 1");
+        this.budgetNanos = budgetMillis * 1_000_000;
+        this.search = new Minimax(1, heuristic, true);
+        this.table = table;
+        search.setTranspositionTable(table);
+    }
+
+    // Collects statistics about each move into stats, or stops collecting if stats is null
+    // Node counts add up the nodes of every iteration
+    public void setStats(SearchStats stats) {
+        search.setStats(stats);
+    }
+
+    // Searches only one of each set of symmetric root moves; see Minimax.setSymmetryPruning
+    public void setSymmetryPruning(boolean symmetryPruning) {
+        search.setSymmetryPruning(symmetryPruning);
+    }
+
+    // Solves positions with at most maxEmptyCells empty cells exactly; see Minimax.setEndgameSolver
+    // Like Minimax, it solves positions with at most 10 empty cells unless this is called.
+    public void setEndgameSolver(ProofNumberSearch solver, int maxEmptyCells) {
+        search.setEndgameSolver(solver, maxEmptyCells);
+    }
+
+    // Restricts the search to forced moves near a threat; see Minimax.setThreatPruning
+    public void setThreatPruning(int maxDistance) {
+        search.setThreatPruning(maxDistance);
+    }
+
+    // Uses Principal Variation Search; see Minimax.setPrincipalVariationSearch
+    public void setPrincipalVariationSearch(boolean pvs) {
+        search.setPrincipalVariationSearch(pvs);
+    }
+
+    // Searches each iteration after the first within window either side of the
+    // previous iteration's score, or with the full window if window is 0
+    // The window is in heuristic score units, so a good one depends on the heuristic.
+    public void setAspirationWindow(int window) {
+        if (window < 0) throw new IllegalArgumentException("window must not be negative");
+        this.aspirationWindow = window;
+    }
+
+    // Returns the number of iterations the previous call searched again because
+    // the score fell outside the aspiration window
+    public long getAspirationFailures() {
+        return aspirationFailures;
+    }
+
+    // Returns the best line of play found by the last completed iteration of the previous call
+    public List<Move> getPrincipalVariation() {
+        return search.getPrincipalVariation();
+    }
+
+    // Returns the depth of the last search that completed in the previous call, or 0
+    // if not even depth 1 did and the empty cell nearest the centre was played
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    // Returns the score of the last search that completed in the previous call; see
+    // Minimax.getLastScore. It is 0 if the endgame solver chose the move.
+    public long getLastScore() {
+        return lastScore;
+    }
+
+    @Override
+    public Move getCurrentPlayerMove(Game game) {
+        long deadline = System.nanoTime() + budgetNanos;
+        SearchStats stats = search.getStats();
+        if (stats != null) stats.start();
+        Move solved = search.solveEndgame(game);
+        if (solved != null) {
+            completedDepth = 0;
+            lastScore = 0;
+            if (stats != null) stats.finish(0);
+            return solved;
+        }
+        if (table != null) table.newSearch();
+        search.startMove();
+        aspirationFailures = 0;
+
+        // There is no point searching deeper than the number of empty cells
+        int emptyCells = 0;
+        for (int row = 0; row < game.getSize(); row++)
+            for (int col = 0; col < game.getSize(); col++)
+                if (game.getPiece(row, col) == PieceColour.NONE) emptyCells++;
+
+        // The empty cell nearest the centre is played if even depth 1 runs out of time
+        Move bestMove = Minimax.centreMove(game);
+        completedDepth = 0;
+        lastScore = 0;
+        // Stop early once the result is a forced win or loss
+        for (int depth = 1; depth <= emptyCells && Math.abs(lastScore) < Minimax.WON; depth++) {
+            try {
+                bestMove = aspirationWindow == 0 || depth == 1 ? search.searchRoot(game, depth, deadline)
+                        : aspirationSearch(game, depth, deadline);
+                completedDepth = depth;
+                lastScore = search.getLastScore();
+            } catch (Minimax.SearchAborted e) {
+                break;
+            }
+        }
+        if (stats != null) stats.finish(completedDepth);
+        return bestMove;
+    }
+
+    // Searches to the depth within a window around the last score, widening it until the score falls inside
+    private Move aspirationSearch(Game game, int depth, long deadline) {
+        long previous = search.getLastScore();
+        long below = aspirationWindow, above = aspirationWindow;
+        while (true) {
+            long alpha = Math.max(-Minimax.WIN, previous - below);
+            long beta = Math.min(Minimax.WIN, previous + above);
+            Move move = search.searchRoot(game, depth, deadline, alpha, beta);
+            long score = search.getLastScore();
+            if (score <= alpha && alpha > -Minimax.WIN) {
+                below = Math.abs(score) >= Minimax.WON ? Minimax.WIN * 2 : 2 * (previous - score + below);
+            } else if (score >= beta && beta < Minimax.WIN) {
+                above = Math.abs(score) >= Minimax.WON ? Minimax.WIN * 2 : 2 * (score - previous + above);
+            } else {
+                return move;
+            }
+            aspirationFailures++;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts durations in buckets so that percentiles of millions of them can be
+// read without keeping every value
+// Each power of two is split into 16 buckets, so a percentile is within about
+// 6% of the true value. Recording is lock-free and safe from any thread.
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 16;
+    private static final int BUCKETS = (64 - 3) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // Counts a duration of the given number of nanoseconds
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - 4)) & (SUB_BUCKETS - 1);
+        return (exponent - 3) * SUB_BUCKETS + sub;
+    }
+
+    // The smallest value that falls in a bucket
+    private static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + 3;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 4);
+    }
+
+    // Returns the number of durations counted
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            total += counts.get(i);
+        return total;
+    }
+
+    // Returns the duration in nanoseconds that the given fraction of the counted
+    // durations do not exceed, e.g. 0.99 for the 99th percentile, or 0 if none were counted
+    public long getPercentile(double fraction) {
+        if (fraction < 0 || fraction > 1) throw new IllegalArgumentException("fraction must be between 0 and 1");
+        long total = getCount();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return lowest(i);
+        }
+        return lowest(BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                getPercentile(0.5) / 1e6, getPercentile(0.9) / 1e6, getPercentile(0.99) / 1e6,
+                getPercentile(0.999) / 1e6, getPercentile(1) / 1e6);
+    }
+}
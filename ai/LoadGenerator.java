@@ -0,0 +1,204 @@
+package ai;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import game.*;
+
+// Plays many games against a GameServer at once and measures how it copes
+// Each client plays whole games in a loop: it creates a game, plays a random
+// move, asks the AI for a reply, and so on until the game ends, and then
+// deletes it. It keeps its own copy of the game to choose legal moves. The time
+// every request takes is recorded, with AI moves kept apart from the rest.
+public class LoadGenerator {
+    private final URI base;
+    private final int clients;
+    private final int size;
+    private final long aiMillis;
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    // The results of a run
+    public static final class Report {
+        private final int games;
+        private final long requests;
+        private final long errors;
+        private final long elapsedNanos;
+        private final LatencyHistogram requestLatencies;
+        private final LatencyHistogram aiLatencies;
+
+        private Report(int games, long requests, long errors, long elapsedNanos, LatencyHistogram requestLatencies,
+                LatencyHistogram aiLatencies) {
+            this.games = games;
+            this.requests = requests;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.requestLatencies = requestLatencies;
+            this.aiLatencies = aiLatencies;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        // Returns the number of requests that failed or did not answer as expected
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRequestsPerSecond() {
+            return requests * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        // Returns the latencies of the requests other than AI moves
+        public LatencyHistogram getRequestLatencies() {
+            return requestLatencies;
+        }
+
+        public LatencyHistogram getAiLatencies() {
+            return aiLatencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d requests (%d errors) in %.2f s, %.1f requests/s%n"
+                    + "Requests: %s%nAI moves: %s", games, requests, errors, elapsedNanos / 1e9,
+                    getRequestsPerSecond(), requestLatencies, aiLatencies);
+        }
+    }
+
+    // base is the server's /games address, e.g. http://localhost:8080/games
+    // clients play at the same time, on boards of the size, giving the AI aiMillis a move
+    public LoadGenerator(URI base, int clients, int size, long aiMillis) {
+        if (clients < 1) throw new IllegalArgumentException("clients must be at least 1");
+        if (size < 1) throw new IllegalArgumentException("size must be at least 1");
+        this.base = base;
+        this.clients = clients;
+        this.size = size;
+        this.aiMillis = aiMillis;
+    }
+
+    // Plays the given number of games, shared out between the clients, and returns the results
+    public Report run(int games, long seed) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong requests = new AtomicLong(), errors = new AtomicLong();
+        LatencyHistogram requestLatencies = new LatencyHistogram(), aiLatencies = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                tasks.add(() -> {
+                    for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                        SplittableRandom random = new SplittableRandom(seed ^ game * 0x9E3779B97F4A7C15L);
+                        try {
+                            play(random, requests, errors, requestLatencies, aiLatencies);
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : pool.invokeAll(tasks))
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A client failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new Report(games, requests.get(), errors.get(), System.nanoTime() - start, requestLatencies,
+                aiLatencies);
+    }
+
+    // Plays one game against the server, the client moving first
+    private void play(SplittableRandom random, AtomicLong requests, AtomicLong errors,
+            LatencyHistogram requestLatencies, LatencyHistogram aiLatencies) throws IOException, InterruptedException {
+        HttpResponse<String> created = send("POST", "?size=" + size, requests, requestLatencies);
+        if (created.statusCode() != 201) {
+            errors.incrementAndGet();
+            return;
+        }
+        String game = "/" + created.body();
+        Game mirror = new GameImpl(size);
+        while (!mirror.isOver()) {
+            List<Move> moves = new ArrayList<>(mirror.getMoves());
+            Move move = moves.get(random.nextInt(moves.size()));
+            HttpResponse<String> played = send("POST", game + "/moves?row=" + move.getRow() + "&col=" + move.getCol(),
+                    requests, requestLatencies);
+            if (played.statusCode() != 200) {
+                errors.incrementAndGet();
+                break;
+            }
+            mirror.makeMove(move);
+            if (mirror.isOver()) break;
+            HttpResponse<String> reply = send("POST", game + "/ai?millis=" + aiMillis, requests, aiLatencies);
+            if (reply.statusCode() != 200) {
+                errors.incrementAndGet();
+                break;
+            }
+            String[] cell = reply.body().split(" ");
+            mirror.makeMove(new MoveImpl(Integer.parseInt(cell[0]), Integer.parseInt(cell[1])));
+        }
+        if (send("DELETE", game, requests, requestLatencies).statusCode() != 200) errors.incrementAndGet();
+    }
+
+    private HttpResponse<String> send(String method, String path, AtomicLong requests, LatencyHistogram latencies)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        latencies.record(System.nanoTime() - start);
+        requests.incrementAndGet();
+        return response;
+    }
+
+    // Arguments: [games] [clients] [size] [AI millis] [url]
+    // By default 200 games of 5x5 by 50 clients, 20 ms a move, against a server
+    // started in this process unless a url is given
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long millis = args.length > 3 ? Long.parseLong(args[3]) : 20;
+        GameServer server = null;
+        URI base;
+        if (args.length > 4) {
+            base = URI.create(args[4]);
+        } else {
+            server = new GameServer(0, 4, Runtime.getRuntime().availableProcessors(), 60_000,
+                    DistanceHeuristic::new);
+            server.start();
+            base = URI.create("http://localhost:" + server.getPort() + "/games");
+        }
+        try {
+            System.out.println(new LoadGenerator(base, clients, size, millis).run(games, 1));
+        } finally {
+            if (server != null) server.stop();
+        }
+    }
+}
@@ -1,71 +1,154 @@
 package ai;
 import game.*;
-import java.util.*;
+import java.util.Arrays;
 
 // Computes the minimum number of pieces needed to win
 // assuming the other player never places anything.
 // This is a safe lower bound on closeness to winning.
+//
+// The board is read through Game.getPiece, without copying the grid, into a
+// flat int array with a one-cell border, so the searches need no bounds checks.
+// A GameImpl backed by a BitboardGrid is read a word at a time instead, visiting
+// only the occupied cells.
+// All buffers are reused between calls, so an instance is not safe to share
+// between threads.
 public class MinPiecesHeuristic implements Heuristic {
+    private static final int EMPTY = 0, OURS = 1, THEIRS = 2, BORDER = 3;
+    private static final int BOTTOM_ROW = 1, RIGHT_COLUMN = 2;
 
-    private class Position {
-        int row, col, distance;
+    private int size;
+    // Cells are indexed (row + 1) * width + (col + 1), where width = size + 2
+    private int width;
+    private int[] board;
+    private int[] ends;
+    private int[] dist;
+    private int[] visited;
+    private int[] reached;
+    private int generation;
+    // Occupancy of the player to move and of the other player, for bitboard games
+    private long[] ours;
+    private long[] theirs;
+    // Double-ended queue of cell indices, as a ring buffer
+    private int[] deque;
+    private int head, tail;
 
-        Position(int row, int col, int distance) {
-            this.row = row;
-            this.col = col;
-            this.distance = distance;
+    // Allocates the buffers for a board size
+    private void prepare(int size) {
+        if (this.size == size) return;
+        this.size = size;
+        width = size + 2;
+        int cells = width * width;
+        board = new int[cells];
+        ends = new int[cells];
+        dist = new int[cells];
+        visited = new int[cells];
+        reached = new int[cells];
+        generation = 0;
+        ours = new long[(size * size + 63) >>> 6];
+        theirs = new long[ours.length];
+        Arrays.fill(board, BORDER);
+        for (int i = 0; i < size; i++) {
+            ends[size * width + i + 1] |= BOTTOM_ROW;
+            ends[(i + 1) * width + size] |= RIGHT_COLUMN;
         }
+        // Every cell is expanded at most once and pushes at most four neighbours,
+        // plus one push for each start cell
+        deque = new int[Integer.highestOneBit(5 * size * size + size) << 1];
     }
 
-    // Uses Dijkstra's algorithm to find the shortest path
-    // Locations with the same colour as ours have weight 0
-    // Empty locations have weight 1
-    // Locations with the other colour are impassable
-    private int dijkstra(Grid grid, PieceColour piece, int startr, int startc, int endr, int endc) {
-        PriorityQueue<Position> queue = new PriorityQueue<>(new Comparator<Position>() {
-            @Override
-            public int compare(Position a, Position b) {
-                return a.distance - b.distance;
-            }
-        });
-        boolean[][] visited = new boolean[grid.getSize()][grid.getSize()];
-        for (int i = 0; i < grid.getSize(); ++i) {
-            if (startr != -1)
-                queue.offer(new Position(startr, i, grid.getPiece(startr, i) == piece ? 0 : 1));
-            if (startc != -1)
-                queue.offer(new Position(i, startc, grid.getPiece(i, startc) == piece ? 0 : 1));
+    private void pushFront(int cell) {
+        head = (head - 1) & (deque.length - 1);
+        deque[head] = cell;
+    }
+
+    private void pushBack(int cell) {
+        deque[tail] = cell;
+        tail = (tail + 1) & (deque.length - 1);
+    }
+
+    // Offers a cell at a distance, keeping it only if that is shorter than before
+    private void relax(int cell, int distance, boolean front) {
+        if (board[cell] == BORDER || visited[cell] == generation) return;
+        if (reached[cell] == generation && dist[cell] <= distance) return;
+        reached[cell] = generation;
+        dist[cell] = distance;
+        if (front) pushFront(cell);
+        else pushBack(cell);
+    }
+
+    // Finds the shortest path with a 0-1 breadth-first search
+    // Leaving a location with the same colour as ours costs 0
+    // Leaving an empty location costs 1
+    // Locations with the other colour cannot be left
+    // Start locations cost 0 if they are ours and 1 otherwise
+    // A path ends at any location on the end row (or column)
+    // Edges only ever cost 0 or 1, so a deque ordered by distance replaces the priority queue
+    private int shortestPath(boolean topToBottom) {
+        // Stamping with a new generation clears the visited and reached marks in O(1)
+        if (++generation == 0) {
+            Arrays.fill(visited, 0);
+            Arrays.fill(reached, 0);
+            generation = 1;
         }
-        int[][] dirs = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
-        while (!queue.isEmpty()) {
-            Position pos = queue.poll();
-            if (visited[pos.row][pos.col])
+        head = tail = 0;
+        int end = topToBottom ? BOTTOM_ROW : RIGHT_COLUMN;
+        for (int i = 0; i < size; ++i) {
+            int cell = topToBottom ? width + i + 1 : (i + 1) * width + 1;
+            boolean ours = board[cell] == OURS;
+            relax(cell, ours ? 0 : 1, ours);
+        }
+        while (head != tail) {
+            int cell = deque[head];
+            head = (head + 1) & (deque.length - 1);
+            if (visited[cell] == generation)
                 continue;
-            visited[pos.row][pos.col] = true;
-            if (pos.row == endr || pos.col == endc)
-                return pos.distance;
-            for (int d = 0; d < dirs.length; d++) {
-                int row = pos.row + dirs[d][0];
-                int col = pos.col + dirs[d][1];
-                if (row < 0 || row >= grid.getSize() || col < 0 || col >= grid.getSize())
-                    continue;
-                if (visited[row][col])
-                    continue;
-                if (grid.getPiece(pos.row, pos.col) == piece) {
-                    queue.offer(new Position(row, col, pos.distance));
-                } else if (grid.getPiece(pos.row, pos.col) == PieceColour.NONE) {
-                    queue.offer(new Position(row, col, pos.distance + 1));
-                }
-            }
+            visited[cell] = generation;
+            if ((ends[cell] & end) != 0)
+                return dist[cell];
+            int piece = board[cell];
+            if (piece == THEIRS)
+                continue;
+            boolean free = piece == OURS;
+            int distance = free ? dist[cell] : dist[cell] + 1;
+            relax(cell - width, distance, free);
+            relax(cell + width, distance, free);
+            relax(cell - 1, distance, free);
+            relax(cell + 1, distance, free);
         }
-        return grid.getSize() * grid.getSize();
+        return size * size;
     }
 
     @Override
     public int score(Game game) {
-        var grid = game.getGrid();
+        prepare(game.getSize());
         var player = game.currentPlayer();
-        return -Math.min(dijkstra(grid, player, 0, -1, grid.getSize() - 1, -1),
-                dijkstra(grid, player, -1, 0, -1, grid.getSize() - 1));
+        var other = player == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE;
+        if (game instanceof GameImpl impl && impl.copyOccupancy(player, ours)
+                && impl.copyOccupancy(other, theirs)) {
+            for (int row = 0; row < size; row++)
+                Arrays.fill(board, (row + 1) * width + 1, (row + 1) * width + size + 1, EMPTY);
+            place(ours, OURS);
+            place(theirs, THEIRS);
+        } else {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    PieceColour piece = game.getPiece(row, col);
+                    board[(row + 1) * width + col + 1] = piece == player ? OURS
+                            : piece == PieceColour.NONE ? EMPTY : THEIRS;
+                }
+            }
+        }
+        return -Math.min(shortestPath(true), shortestPath(false));
+    }
+
+    // Marks every cell whose bit is set, indexed row * size + col, with the given piece
+    private void place(long[] bits, int piece) {
+        for (int word = 0; word < bits.length; word++) {
+            for (long rest = bits[word]; rest != 0; rest &= rest - 1) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(rest);
+                board[(index / size + 1) * width + index % size + 1] = piece;
+            }
+        }
     }
 
 }
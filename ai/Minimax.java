@@ -1,74 +1,545 @@
 package ai;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import game.*;
 
 // An implementation of the Minimax algorithm
+// By default every child node is searched on a copy of the game.
+// In in-place mode the search copies the game once per call and then walks
+// the tree with makeMove and undoMove, so the inner loop does not allocate.
+// Both modes try moves in the order given by MoveOrdering, from one move buffer
+// per ply, so the same search always chooses the same move
 public class Minimax implements AI {
+    // Score of a position won at the root, from the winner's point of view
+    // A win n plies from the root scores WIN - n, so faster wins score higher
+    // and slower losses score higher than faster ones
+    static final long WIN = Integer.MAX_VALUE;
+    // Scores at least this far from 0 are wins or losses rather than heuristic estimates
+    static final long WON = WIN - (1 << 16);
+
     private int maxDepth;
     private Heuristic heuristic;
+    // The heuristic again if it follows the in-place search's moves, otherwise null
+    private IncrementalHeuristic incremental;
+    private final boolean inPlace;
+    private final MoveOrdering ordering = new MoveOrdering();
+
+    // Buffers for the search, sized for the last board searched
+    // moveBuffers[ply] holds the cells to try at a node that many plies below the root
+    private int[][] moveBuffers;
+    private Move[] cellMoves;
+
+    // Optional transposition table for the in-place search, with probe counts for the last move
+    private TranspositionTable table;
+    private long tableHits, tableMisses;
+
+    // Principal variation: pvTable[ply] holds the best line found from that ply,
+    // and previousPv the line of the last completed search, which is tried first
+    private int[][] pvTable;
+    private int[] pvLength;
+    private int[] previousPv;
+    private int previousPvLength;
+    private boolean followPv;
+
+    // Deadline for the current search (0 for none) and an optional flag
+    // another thread can raise to stop it, both checked every 64 nodes, or every
+    // node on boards of 16x16 and up, where a single leaf takes longer than that
+    private long deadline;
+    private AtomicBoolean stopFlag;
+    private int checkMask = 63;
+    private long nodes;
+    private long lastScore;
+
+    // Optional statistics, collected only while attached
+    private SearchStats stats;
+
+    // Whether root moves that are mirror images of each other are searched once
+    private boolean symmetryPruning;
 
+    // Restricts the in-place search to forced moves once the opponent is at most
+    // threatDistance from a path, or never if it is 0
+    private int threatDistance;
+    private final ThreatDetector threats = new ThreatDetector();
+    private int[] threatCells;
+    private long forcedNodes;
+
+    // Whether the in-place search uses Principal Variation Search
+    private boolean pvs;
+    private long researches;
+
+    // Exact solver, used instead of searching once few cells are empty
+    // The default one is only allocated when the first such position is reached.
+    static final int DEFAULT_ENDGAME_CELLS = 10;
+    private static final long DEFAULT_ENDGAME_NODES = 10_000;
+    private ProofNumberSearch endgame;
+    private int endgameCells = DEFAULT_ENDGAME_CELLS;
+    private boolean defaultEndgame = true;
+
+    // Thrown to unwind a search whose deadline has passed or that was stopped
+    // A single instance without a stack trace, so aborting is cheap
+    static final class SearchAborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final SearchAborted INSTANCE = new SearchAborted();
+
+        private SearchAborted() {
+            super("The search was aborted", null, false, false);
+        }
+    }
 
     // maxDepth is the number of moves ahead to look
     // heuristic is used to estimate the quality of a non-terminal game state
     public Minimax(int maxDepth, Heuristic heuristic) {
+        this(maxDepth, heuristic, false);
+    }
+
+    // inPlace selects the make/undo search, which explores a single game with makeMove and undoMove
+    public Minimax(int maxDepth, Heuristic heuristic, boolean inPlace) {
         if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be at least 1");
         this.maxDepth = maxDepth;
         this.heuristic = heuristic;
+        this.inPlace = inPlace;
+        if (inPlace && heuristic instanceof IncrementalHeuristic following) incremental = following;
+    }
+
+    // Uses a transposition table in the in-place search, or none if table is null
+    // The table may be kept across moves of the same game
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    // Breaks ties in the move ordering with a seeded random generator
+    // Without a seed ties are broken by cell index
+    public void setSeed(long seed) {
+        ordering.setSeed(seed);
+    }
+
+    // Searches only one of each set of root moves that a symmetry of the position
+    // maps onto each other, e.g. one corner of the empty board rather than four
+    // Off by default; on symmetric positions it cuts the root branching factor by up to 8
+    public void setSymmetryPruning(boolean symmetryPruning) {
+        this.symmetryPruning = symmetryPruning;
+    }
+
+    // Makes the in-place search use Principal Variation Search (NegaScout): the first
+    // move of each node is searched with the full window and the others with a null
+    // window, which only shows that they are no better, and only a move that turns
+    // out better is searched again with the full window
+    // With good move ordering the first move is usually best, so few moves need the
+    // second search and the null windows cut off much sooner. Off by default.
+    public void setPrincipalVariationSearch(boolean pvs) {
+        this.pvs = pvs;
+    }
+
+    // Returns the number of moves Principal Variation Search had to search again
+    // during the last call to getCurrentPlayerMove
+    public long getResearchCount() {
+        return researches;
     }
 
-    // Returns the list of moves in a random order
-    private ArrayList<Move> getMoves(Game game) {
-        var moves = new ArrayList<>(game.getMoves());
-        Collections.shuffle(moves, new Random());
-        return moves;
+    // Makes the in-place search only try the moves ThreatDetector.forcedMoves gives
+    // when there are any: its own winning moves, or else the cells on all of the
+    // opponent's minimal paths once the opponent is at most maxDistance empty
+    // cells from a path. 0 turns this off, which is the default.
+    // With maxDistance 1 nothing is lost, as every other move loses at once.
+    // Larger values prune much more and may miss a counter-threat.
+    public void setThreatPruning(int maxDistance) {
+        if (maxDistance < 0) throw new IllegalArgumentException("maxDistance must not be negative");
+        this.threatDistance = maxDistance;
+    }
+
+    // Returns the number of nodes of the last call to getCurrentPlayerMove whose
+    // moves were restricted by threat pruning
+    public long getForcedNodes() {
+        return forcedNodes;
+    }
+
+    // Returns the best line of play found by the last completed in-place search,
+    // starting with the move it chose
+    // The line stops early where the rest of it came from the transposition table.
+    public List<Move> getPrincipalVariation() {
+        List<Move> line = new ArrayList<>();
+        for (int i = 0; i < previousPvLength; i++)
+            line.add(cellMoves[previousPv[i]]);
+        return line;
+    }
+
+    // Solves positions with at most maxEmptyCells empty cells with the solver
+    // instead of searching them, or never if solver is null
+    // A win or a draw found by the solver is played at once. If the solver runs out
+    // of nodes, or finds the game lost, the usual search picks the move.
+    // By default positions with at most 10 empty cells are solved with a budget of
+    // 10,000 nodes, a few tens of milliseconds; setEndgameSolver(null, 0) turns this off.
+    public void setEndgameSolver(ProofNumberSearch solver, int maxEmptyCells) {
+        if (maxEmptyCells < 0) throw new IllegalArgumentException("maxEmptyCells must not be negative");
+        this.endgame = solver;
+        this.endgameCells = maxEmptyCells;
+        this.defaultEndgame = false;
+    }
+
+    // Returns the endgame solver's move for the position, or null if there is no
+    // solver, too many cells are empty, or the solver has no move to recommend
+    Move solveEndgame(Game game) {
+        if (endgame == null && !defaultEndgame) return null;
+        int size = game.getSize(), emptyCells = 0;
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                if (game.getPiece(row, col) == PieceColour.NONE) emptyCells++;
+        if (emptyCells > endgameCells) return null;
+        if (endgame == null) endgame = new ProofNumberSearch(1, DEFAULT_ENDGAME_NODES);
+        ProofNumberSearch.Result result = endgame.solve(game);
+        return result == ProofNumberSearch.Result.WIN || result == ProofNumberSearch.Result.DRAW
+                ? endgame.getBestMove() : null;
+    }
+
+    // Collects statistics about each search into stats, or stops collecting if stats is null
+    public void setStats(SearchStats stats) {
+        this.stats = stats;
+    }
+
+    // Returns the statistics being collected, or null if there are none
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    // Makes the in-place search abort with SearchAborted once the flag is set
+    void setStopFlag(AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+    }
+
+    // Returns the number of nodes the in-place search visited during the last call
+    // to getCurrentPlayerMove
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    // Returns the number of transposition table probes that found an entry
+    // during the last call to getCurrentPlayerMove
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    // Returns the number of transposition table probes that found nothing
+    // during the last call to getCurrentPlayerMove
+    public long getTableMisses() {
+        return tableMisses;
+    }
+
+    // Scores a position with the heuristic, timing it if statistics are being collected
+    // The score only needs to be exact inside the window (alpha, beta)
+    private int evaluate(Game game, long alpha, long beta) {
+        if (stats == null) return heuristic.score(game, alpha, beta);
+        long start = System.nanoTime();
+        int score = heuristic.score(game, alpha, beta);
+        stats.leaf(System.nanoTime() - start);
+        return score;
     }
 
     // Returns the score of the best move for the current player
     // Uses minimax with alpha-beta pruning
     private long minimax(Game game, int depth, long alpha, long beta, PieceColour player) {
+        int ply = maxDepth - depth;
+        if (stats != null) stats.node(ply);
         if (game.isOver() || depth == 0) {
-            if (game.winner() == player) return Integer.MAX_VALUE;
-            else if (game.winner() != PieceColour.NONE) return Integer.MIN_VALUE;
-            return heuristic.score(game);
+            // Faster wins and slower losses score higher
+            if (game.winner() == player) return WIN - ply;
+            else if (game.winner() != PieceColour.NONE) return -(WIN - ply);
+            // The heuristic scores the position for the player to move
+            long score = evaluate(game, -WIN, WIN);
+            return game.currentPlayer() == player ? score : -score;
         }
 
-        var moves = getMoves(game);
+        int[] moves = moveBuffers[ply];
+        int count = ordering.generate(game, ply, moves);
 
         if (game.currentPlayer() == player) {
             long bestScore = Integer.MIN_VALUE;
-            for (Move move : moves) {
+            for (int i = 0; i < count; i++) {
                 Game newGame = game.copy();
-                newGame.makeMove(move);
+                newGame.makeMove(cellMoves[moves[i]]);
                 long score = minimax(newGame, depth - 1, alpha, beta, player);
                 bestScore = Math.max(bestScore, score);
-                if (bestScore >= beta) return bestScore;
+                if (bestScore >= beta) {
+                    ordering.recordCutoff(ply, moves[i], game.currentPlayer(), depth);
+                    if (stats != null) stats.cutoff(i == 0);
+                    return bestScore;
+                }
                 alpha = Math.max(alpha, score);
             }
             return bestScore;
         } else {
             long bestScore = Integer.MAX_VALUE;
-            for (Move move : moves) {
+            for (int i = 0; i < count; i++) {
                 Game newGame = game.copy();
-                newGame.makeMove(move);
+                newGame.makeMove(cellMoves[moves[i]]);
                 long score = minimax(newGame, depth - 1, alpha, beta, player);
                 bestScore = Math.min(bestScore, score);
-                if (bestScore <= alpha) return bestScore;
+                // A cutoff for the minimising player is a beta cutoff in negamax terms
+                if (bestScore <= alpha) {
+                    ordering.recordCutoff(ply, moves[i], game.currentPlayer(), depth);
+                    if (stats != null) stats.cutoff(i == 0);
+                    return bestScore;
+                }
                 beta = Math.min(beta, score);
             }
             return bestScore;
         }
     }
 
+    // Allocates the in-place buffers for the board size and search depth
+    private void prepareBuffers(int size, int depth) {
+        if (cellMoves == null || cellMoves.length != size * size) {
+            previousPv = null;
+            previousPvLength = 0;
+            cellMoves = new Move[size * size];
+            threatCells = new int[size * size];
+            checkMask = size >= 16 ? 0 : 63;
+            for (int row = 0; row < size; row++)
+                for (int col = 0; col < size; col++)
+                    cellMoves[row * size + col] = new MoveImpl(row, col);
+            moveBuffers = null;
+        }
+        if (moveBuffers == null || moveBuffers.length <= depth) {
+            moveBuffers = new int[depth + 1][size * size];
+            pvTable = new int[depth + 1][depth + 1];
+            pvLength = new int[depth + 1];
+            // Growing for a deeper iteration keeps the line of the last one to try first
+            int[] line = previousPv;
+            previousPv = new int[depth + 1];
+            if (line != null) System.arraycopy(line, 0, previousPv, 0, previousPvLength);
+            else previousPvLength = 0;
+        }
+        ordering.prepare(size, depth + 1);
+    }
+
+    // Moves the cell to the front of the first count entries of buffer, if present,
+    // keeping the order of the others
+    private static void moveToFront(int[] buffer, int count, int cell) {
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == cell) {
+                System.arraycopy(buffer, 0, buffer, 1, i);
+                buffer[0] = cell;
+                return;
+            }
+        }
+    }
+
+    // Win scores count plies from the root, but a table entry may be read at another
+    // ply, so they are stored counted from the position itself
+    private static long toTable(long score, int ply) {
+        if (score >= WON) return score + ply;
+        if (score <= -WON) return score - ply;
+        return score;
+    }
+
+    private static long fromTable(long score, int ply) {
+        if (score >= WON) return score - ply;
+        if (score <= -WON) return score + ply;
+        return score;
+    }
+
+    // Returns the score of the position for the player to move (negamax form)
+    // Uses alpha-beta pruning and searches the game in place
+    // ply is the distance from the root, depth the number of plies left to search
+    private long negamax(Game game, int depth, int ply, long alpha, long beta) {
+        pvLength[ply] = ply;
+        if ((++nodes & checkMask) == 0 && (deadline != 0 && System.nanoTime() > deadline
+                || stopFlag != null && stopFlag.get()))
+            throw SearchAborted.INSTANCE;
+        if (stats != null) stats.node(ply);
+
+        if (game.isOver() || depth == 0) {
+            // Only the player who just moved can have won
+            if (game.winner() != PieceColour.NONE) return -(WIN - ply);
+            return evaluate(game, alpha, beta);
+        }
+
+        // A stored result that was searched at least as deep may settle this node
+        // The root always searches, since it has to produce a move
+        long key = 0;
+        int hashMove = -1;
+        long originalAlpha = alpha;
+        if (table != null) {
+            key = game.hashKey();
+            long entry = table.probe(key);
+            if (entry == 0) {
+                tableMisses++;
+            } else {
+                tableHits++;
+                hashMove = TranspositionTable.move(entry);
+                if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                    long stored = fromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT) return stored;
+                    if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, stored);
+                    else beta = Math.min(beta, stored);
+                    if (alpha >= beta) return stored;
+                }
+            }
+        }
+
+        int[] moves = moveBuffers[ply];
+        int count = ordering.generate(game, ply, moves);
+        if (threatDistance > 0) {
+            int forced = threats.forcedMoves(game, threatDistance, threatCells);
+            if (forced > 0) {
+                int kept = threats.restrict(moves, count, threatCells, forced);
+                if (kept > 0) {
+                    count = kept;
+                    forcedNodes++;
+                }
+            }
+        }
+        if (ply == 0 && symmetryPruning) count = Symmetry.distinctMoves(game, moves, count);
+        // The best move found last time is the most likely to cause a cutoff,
+        // and along the previous principal variation its move is tried first of all
+        if (hashMove >= 0) moveToFront(moves, count, hashMove);
+        boolean onPv = followPv && ply < previousPvLength;
+        if (onPv) moveToFront(moves, count, previousPv[ply]);
+
+        long bestScore = Long.MIN_VALUE;
+        int bestCell = -1;
+        for (int i = 0; i < count; i++) {
+            Move move = cellMoves[moves[i]];
+            followPv = onPv && i == 0 && moves[0] == previousPv[ply];
+            game.makeMove(move);
+            if (incremental != null) incremental.moveMade(game, move);
+            long score;
+            if (pvs && i > 0) {
+                score = -negamax(game, depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta) {
+                    researches++;
+                    score = -negamax(game, depth - 1, ply + 1, -beta, -alpha);
+                }
+            } else {
+                score = -negamax(game, depth - 1, ply + 1, -beta, -alpha);
+            }
+            game.undoMove(move);
+            if (incremental != null) incremental.moveUndone(game, move);
+            if (score > bestScore) {
+                bestScore = score;
+                bestCell = moves[i];
+                // Extend the principal variation with the child's
+                pvTable[ply][ply] = bestCell;
+                for (int j = ply + 1; j < pvLength[ply + 1]; j++)
+                    pvTable[ply][j] = pvTable[ply + 1][j];
+                pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+            }
+            if (bestScore >= beta) {
+                ordering.recordCutoff(ply, bestCell, game.currentPlayer(), depth);
+                if (stats != null) stats.cutoff(i == 0);
+                break;
+            }
+            alpha = Math.max(alpha, score);
+        }
+        followPv = false;
+
+        if (table != null) {
+            int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                    : bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, depth, bound, toTable(bestScore, ply), bestCell);
+        }
+        return bestScore;
+    }
+
+    // Prepares for choosing a new move: resets the counters and forgets the
+    // previous principal variation
+    // Whoever owns the transposition table is responsible for ageing it
+    void startMove() {
+        tableHits = tableMisses = nodes = researches = forcedNodes = 0;
+        previousPvLength = 0;
+        ordering.newMove();
+    }
+
+    // Returns the empty cell nearest the centre, a move to fall back on when
+    // there is no time to search even depth 1
+    static Move centreMove(Game game) {
+        int size = game.getSize(), bestRow = -1, bestCol = -1, bestDistance = Integer.MAX_VALUE;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (game.getPiece(row, col) != PieceColour.NONE) continue;
+                // Doubled so that even sizes work in integers, as in MoveOrdering
+                int distance = Math.abs(2 * row - (size - 1)) + Math.abs(2 * col - (size - 1));
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestRow = row;
+                    bestCol = col;
+                }
+            }
+        }
+        if (bestRow < 0) throw new IllegalArgumentException("There are no moves to choose from");
+        return new MoveImpl(bestRow, bestCol);
+    }
+
+    // Searches a copy of the game in place to the given depth and returns the best move
+    // The principal variation of the previous call since startMove is tried first,
+    // so calling this with increasing depths gives iterative deepening
+    // deadline is a System.nanoTime() value, or 0 for no deadline
+    // Throws SearchAborted if the deadline passes before the search completes
+    Move searchRoot(Game root, int depth, long deadline) {
+        return searchRoot(root, depth, deadline, -WIN, WIN);
+    }
+
+    // Like searchRoot, but within the window (alpha, beta)
+    // If getLastScore is then outside the window, it is only a bound and the move
+    // need not be the best, so the caller should search again with a wider window
+    Move searchRoot(Game root, int depth, long deadline, long alpha, long beta) {
+        if (root.isOver()) throw new IllegalArgumentException("There are no moves to choose from");
+        Game game = root.copy();
+        prepareBuffers(game.getSize(), depth);
+        this.deadline = deadline;
+        if (incremental != null) incremental.reset(game);
+        followPv = previousPvLength > 0;
+        lastScore = negamax(game, depth, 0, alpha, beta);
+        previousPvLength = pvLength[0];
+        System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+        return cellMoves[pvTable[0][0]];
+    }
+
+    // Searches a copy of the game in place to the given depth within the window
+    // (alpha, beta) and returns its fail-soft score for the player to move
+    long searchScore(Game root, int depth, long alpha, long beta) {
+        Game game = root.copy();
+        prepareBuffers(game.getSize(), Math.max(depth, 1));
+        this.deadline = 0;
+        if (incremental != null) incremental.reset(game);
+        followPv = false;
+        return negamax(game, depth, 0, alpha, beta);
+    }
+
+    // Returns the score of the last completed in-place search, for the player who was to move
+    // A win in n plies scores Integer.MAX_VALUE - n and a loss the negative of that.
+    public long getLastScore() {
+        return lastScore;
+    }
+
     @Override
     public Move getCurrentPlayerMove(Game game) {
-        var moves = getMoves(game);
-        Move bestMove = moves.get(0);
+        if (stats != null) stats.start();
+        Move solved = solveEndgame(game);
+        if (solved != null) {
+            if (stats != null) stats.finish(0);
+            return solved;
+        }
+        if (inPlace) {
+            if (table != null) table.newSearch();
+            startMove();
+            Move move = searchRoot(game, maxDepth, 0);
+            if (stats != null) stats.finish(maxDepth);
+            return move;
+        }
+        if (stats != null) stats.node(0);
+        startMove();
+        prepareBuffers(game.getSize(), maxDepth);
+        int[] moves = moveBuffers[0];
+        int count = ordering.generate(game, 0, moves);
+        if (symmetryPruning) count = Symmetry.distinctMoves(game, moves, count);
+        Move bestMove = cellMoves[moves[0]];
         long bestScore = Integer.MIN_VALUE, alpha = Integer.MIN_VALUE, beta = Integer.MAX_VALUE;
-        for (Move move : moves) {
+        for (int i = 0; i < count; i++) {
+            Move move = cellMoves[moves[i]];
             Game newGame = game.copy();
             newGame.makeMove(move);
             long score = minimax(newGame, maxDepth-1, alpha, beta, game.currentPlayer());
@@ -78,7 +549,8 @@ public class Minimax implements AI {
             }
             alpha = Math.max(alpha, score);
         }
+        if (stats != null) stats.finish(maxDepth);
         return bestMove;
     }
-    
+
 }
@@ -0,0 +1,276 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import game.*;
+
+// An AI using Monte Carlo tree search (UCT)
+// Rather than scoring positions with a heuristic, it plays many random games to the
+// end and grows a tree towards the moves that win most often. Its cost per move
+// depends on the budget rather than the branching factor, so it still plays
+// large boards quickly where Minimax cannot look more than a couple of moves ahead.
+//
+// With RAVE enabled a move's statistics also count every playout in which the
+// same player took that cell later on (all moves as first). Connection games suit
+// this well, as a cell is usually good or bad whenever it is taken, and the tree
+// learns much faster early on. Its weight fades as a move gets real visits.
+//
+// The search runs for a number of iterations, a wall-clock time, or whichever
+// ends first. With several threads all of them grow the same tree. A thread
+// counts a visit to each node on its way down before the result is known (a
+// virtual loss), which steers the other threads onto different lines meanwhile.
+// With one thread and only an iteration budget the move chosen depends only on
+// the seed.
+public class MonteCarloTreeSearch implements AI {
+    // Visits a node needs before it is expanded, so one-off leaves cost no memory
+    private static final int EXPAND_AFTER = 2;
+    // Number of visits at which a move's own results and its RAVE results weigh the same
+    private static final int RAVE_EQUIVALENCE = 500;
+
+    private static final AtomicIntegerFieldUpdater<Node> VISITS =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+    private static final AtomicIntegerFieldUpdater<Node> WINS =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "wins");
+
+    private final int threads;
+    private final long seed;
+    private final ForkJoinPool pool;
+    private long iterations = 10_000;
+    private long budgetNanos;
+    private boolean rave;
+    private double exploration = 0.7;
+    private long lastIterations;
+
+    // The results of the playouts through one move
+    // visits and wins are from the point of view of the player who made the move,
+    // and wins counts half points: 2 for a win and 1 for a draw. The RAVE counts are
+    // updated without synchronisation, so a race can lose the odd update.
+    private static final class Node {
+        final int cell;
+        volatile int visits;
+        volatile int wins;
+        int raveVisits;
+        int raveWins;
+        volatile Node[] children;
+
+        Node(int cell) {
+            this.cell = cell;
+        }
+    }
+
+    // Creates a single-threaded search
+    public MonteCarloTreeSearch(long seed) {
+        this(1, seed);
+    }
+
+    // threads is the number of threads growing the tree, seed fixes the random playouts
+    public MonteCarloTreeSearch(int threads, long seed) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+        this.seed = seed;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    // Stops after the given number of playouts per move, or never if it is 0
+    // The default is 10000
+    public void setIterations(long iterations) {
+        if (iterations < 0) throw new IllegalArgumentException("iterations must not be negative");
+        this.iterations = iterations;
+    }
+
+    // Stops after the given wall-clock time per move, or never if it is 0
+    public void setTimeBudget(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("millis must not be negative");
+        this.budgetNanos = millis * 1_000_000;
+    }
+
+    // Turns RAVE (all moves as first) on or off; it is off by default
+    public void setRave(boolean rave) {
+        this.rave = rave;
+    }
+
+    // Sets how strongly less visited moves are preferred, 0.7 by default
+    public void setExploration(double exploration) {
+        if (exploration < 0) throw new IllegalArgumentException("exploration must not be negative");
+        this.exploration = exploration;
+    }
+
+    // Stops the worker threads once the running search is finished
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    // Returns the number of playouts of the last call to getCurrentPlayerMove
+    public long getLastIterations() {
+        return lastIterations;
+    }
+
+    @Override
+    public Move getCurrentPlayerMove(Game game) {
+        if (game.isOver()) throw new IllegalArgumentException("There are no moves to choose from");
+        if (iterations == 0 && budgetNanos == 0)
+            throw new IllegalStateException("Either an iteration or a time budget is needed");
+        long deadline = budgetNanos == 0 ? 0 : System.nanoTime() + budgetNanos;
+        Node root = new Node(-1);
+        AtomicLong started = new AtomicLong();
+
+        if (pool == null) {
+            new Worker(game, seed).run(root, started, deadline);
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                long workerSeed = seed + i;
+                tasks.add(() -> {
+                    new Worker(game, workerSeed).run(root, started, deadline);
+                    return null;
+                });
+            }
+            try {
+                for (Future<Void> result : pool.invokeAll(tasks))
+                    result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while searching", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A search thread failed", e.getCause());
+            }
+        }
+        lastIterations = root.visits;
+
+        // The most visited move is the most reliable, whatever its win rate
+        Node best = null;
+        for (Node child : root.children) {
+            if (best == null || child.visits > best.visits
+                    || child.visits == best.visits && child.wins > best.wins)
+                best = child;
+        }
+        int size = game.getSize();
+        return new MoveImpl(best.cell / size, best.cell % size);
+    }
+
+    // The state of one search thread: a playout engine holding the position, whose
+    // working board follows the line down the tree and is reset after each iteration
+    private final class Worker {
+        private final PlayoutEngine engine;
+        private final PieceColour rootPlayer;
+        private final Node[] path;
+        private final int[] empty;
+        private final SplittableRandom random;
+
+        Worker(Game root, long seed) {
+            random = new SplittableRandom(seed);
+            engine = new PlayoutEngine(root.getSize(), random.nextLong());
+            engine.setPosition(root);
+            rootPlayer = root.currentPlayer();
+            int cells = root.getSize() * root.getSize();
+            path = new Node[cells + 1];
+            empty = new int[cells];
+        }
+
+        void run(Node root, AtomicLong started, long deadline) {
+            // Every thread completes at least one playout before it looks at the clock
+            boolean first = true;
+            while ((iterations == 0 || started.getAndIncrement() < iterations)
+                    && (first || deadline == 0 || System.nanoTime() < deadline)) {
+                iterate(root);
+                first = false;
+            }
+        }
+
+        // Selects a line down the tree, expands its last node, finishes the game
+        // with random moves and records the result along the line
+        private void iterate(Node root) {
+            VISITS.incrementAndGet(root);
+            path[0] = root;
+            int length = 1;
+            Node node = root;
+            while (!engine.isOver()) {
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node != root && node.visits < EXPAND_AFTER) break;
+                    children = expand(node);
+                }
+                node = select(node, children);
+                // The visit counts before the result is known, as a virtual loss
+                VISITS.incrementAndGet(node);
+                engine.play(node.cell);
+                path[length++] = node;
+            }
+            PieceColour winner = engine.playout();
+
+            // path[i] was reached by a move of the root player when i is odd
+            PieceColour other = rootPlayer == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE;
+            for (int i = 0; i < length; i++) {
+                PieceColour mover = (i & 1) == 1 ? rootPlayer : other;
+                int points = winner == mover ? 2 : winner == PieceColour.NONE ? 1 : 0;
+                if (points > 0) WINS.addAndGet(path[i], points);
+                if (rave) updateRave(path[i], mover == rootPlayer ? other : rootPlayer, winner);
+            }
+            engine.reset();
+        }
+
+        // Credits every child move of node that the player to move there took at
+        // some point in this line
+        private void updateRave(Node node, PieceColour toMove, PieceColour winner) {
+            Node[] children = node.children;
+            if (children == null) return;
+            int points = winner == toMove ? 2 : winner == PieceColour.NONE ? 1 : 0;
+            for (Node child : children) {
+                if (engine.getPiece(child.cell) == toMove) {
+                    child.raveVisits++;
+                    child.raveWins += points;
+                }
+            }
+        }
+
+        // Adds a child for every empty cell, in a random order so that ties in
+        // selection are not always settled the same way
+        private Node[] expand(Node node) {
+            synchronized (node) {
+                if (node.children != null) return node.children;
+                int count = 0;
+                for (int cell = 0; cell < empty.length; cell++)
+                    if (engine.isEmpty(cell)) empty[count++] = cell;
+                Node[] children = new Node[count];
+                for (int i = 0; i < count; i++) {
+                    int j = i + random.nextInt(count - i);
+                    int cell = empty[j];
+                    empty[j] = empty[i];
+                    children[i] = new Node(cell);
+                }
+                node.children = children;
+                return children;
+            }
+        }
+
+        // Picks the child with the highest upper confidence bound
+        // Moves that have not been tried count as wins, so each is tried early on
+        private Node select(Node parent, Node[] children) {
+            double logVisits = Math.log(Math.max(parent.visits, 1));
+            Node best = children[0];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                int visits = child.visits;
+                double value = visits == 0 ? 1 : child.wins / (2.0 * visits);
+                if (rave && child.raveVisits > 0) {
+                    double beta = Math.sqrt(RAVE_EQUIVALENCE / (3.0 * visits + RAVE_EQUIVALENCE));
+                    value = (1 - beta) * value + beta * child.raveWins / (2.0 * child.raveVisits);
+                }
+                value += exploration * Math.sqrt(logVisits / (visits + 1));
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+}
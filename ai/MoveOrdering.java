@@ -0,0 +1,162 @@
+package ai;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import game.*;
+
+// Orders the moves tried at each node of the Minimax search
+// Alpha-beta prunes best when the strongest move comes first. Moves are ranked by
+//   - killer moves: the last two moves that caused a cutoff at the same ply
+//   - the history heuristic: how often, and how deep, a move for this colour caused cutoffs
+//   - position: cells near the centre and next to existing pieces
+// Ties keep a fixed order, or are broken by a seeded random number if a seed is given,
+// so that searches are reproducible either way.
+//
+// Moves are written into a caller-supplied int buffer and sorted with per-ply
+// primitive buffers, so ordering does not allocate once the buffers exist.
+// Up to 64 moves are sorted by insertion as they are scored; longer lists, which
+// insertion would sort in quadratic time, are sorted once at the end.
+public class MoveOrdering {
+    private static final int KILLER_BONUS = 1 << 28;
+    private static final int SECOND_KILLER_BONUS = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    private int size;
+    private int[][] killers;
+    private int[] history;
+    private int[] positional;
+    private byte[] board;
+    private long[][] keyBuffers;
+    private Random tieBreak;
+
+    // Creates an ordering that breaks ties by cell index
+    public MoveOrdering() {
+    }
+
+    // Creates an ordering that breaks ties with a random generator using the given seed
+    public MoveOrdering(long seed) {
+        setSeed(seed);
+    }
+
+    // Breaks ties with a random generator using the given seed from now on
+    public void setSeed(long seed) {
+        tieBreak = new Random(seed);
+    }
+
+    // Allocates the buffers for a board size and number of plies, if they are not big enough
+    // Call it before generate, and again whenever the size or the depth grows
+    public void prepare(int size, int plies) {
+        if (this.size != size) {
+            this.size = size;
+            int cells = size * size;
+            history = new int[2 * cells];
+            board = new byte[cells];
+            positional = new int[cells];
+            // Distance from the centre, doubled so that even sizes work in integers
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int distance = Math.abs(2 * row - (size - 1)) + Math.abs(2 * col - (size - 1));
+                    positional[row * size + col] = 2 * (size - 1) - distance;
+                }
+            }
+            killers = null;
+        }
+        if (killers == null || killers.length < plies) {
+            // A deeper iteration of the same move keeps the killers found so far
+            int[][] old = killers;
+            killers = new int[plies][2];
+            keyBuffers = new long[plies][size * size];
+            clearKillers();
+            if (old != null) System.arraycopy(old, 0, killers, 0, old.length);
+        }
+    }
+
+    private void clearKillers() {
+        for (int[] pair : killers) {
+            pair[0] = -1;
+            pair[1] = -1;
+        }
+    }
+
+    // Forgets the killers and halves the history scores before choosing a new move
+    // The history is kept in part since the same moves tend to stay good
+    public void newMove() {
+        if (killers == null) return;
+        clearKillers();
+        for (int i = 0; i < history.length; i++)
+            history[i] >>= 1;
+    }
+
+    // Writes the empty cells of the game into moves, best first, and returns how many there are
+    public int generate(Game game, int ply, int[] moves) {
+        int cells = size * size, empty = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                byte piece = (byte) game.getPiece(row, col).ordinal();
+                board[row * size + col] = piece;
+                if (piece == 0) empty++;
+            }
+        }
+        boolean insertion = empty <= 64;
+
+        int colourOffset = game.currentPlayer() == PieceColour.WHITE ? 0 : cells;
+        int firstKiller = killers[ply][0], secondKiller = killers[ply][1];
+        long[] keys = keyBuffers[ply];
+        int count = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (board[cell] != 0) continue;
+            int score = positional[cell] + 4 * neighbours(cell) + history[colourOffset + cell];
+            if (cell == firstKiller) score += KILLER_BONUS;
+            else if (cell == secondKiller) score += SECOND_KILLER_BONUS;
+            int tie = tieBreak == null ? 0 : tieBreak.nextInt(256);
+            long key = ((long) score << 24) | (tie << 16) | cell;
+            if (!insertion) {
+                keys[count++] = key;
+                continue;
+            }
+            // Insertion sort, highest key first
+            int i = count++;
+            while (i > 0 && keys[i - 1] < key) {
+                keys[i] = keys[i - 1];
+                i--;
+            }
+            keys[i] = key;
+        }
+        if (insertion) {
+            for (int i = 0; i < count; i++)
+                moves[i] = (int) (keys[i] & 0xFFFF);
+        } else {
+            // Ascending, so the highest key is read from the end
+            Arrays.sort(keys, 0, count);
+            for (int i = 0; i < count; i++)
+                moves[i] = (int) (keys[count - 1 - i] & 0xFFFF);
+        }
+        return count;
+    }
+
+    // Counts the pieces of either colour in the 8 cells around a cell
+    private int neighbours(int cell) {
+        int row = cell / size, col = cell % size, count = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++)
+            for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++)
+                if (board[r * size + c] != 0) count++;
+        return count;
+    }
+
+    // Records that the move at cell, made by player at the given ply with depth
+    // plies left to search, caused a beta cutoff
+    public void recordCutoff(int ply, int cell, PieceColour player, int depth) {
+        int[] pair = killers[ply];
+        if (pair[0] != cell) {
+            pair[1] = pair[0];
+            pair[0] = cell;
+        }
+        int index = (player == PieceColour.WHITE ? 0 : size * size) + cell;
+        history[index] += depth * depth;
+        if (history[index] > HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++)
+                history[i] >>= 1;
+        }
+    }
+}
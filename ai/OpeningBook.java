@@ -0,0 +1,191 @@
+package ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import game.*;
+
+// Best moves for every position of the first few plies, worked out in advance
+// The book is generated offline by searching every position reachable in fewer
+// than a given number of plies, and saved to a file. Mirror images of a position
+// share an entry, keyed by the canonical hash from Symmetry, with the move stored
+// for the canonical form and mapped back onto the position asked about.
+//
+// The file is an open-addressing hash table that is memory-mapped when opened,
+// so a lookup reads a slot or two and needs neither a search nor a load step:
+//   "PCOB" (4 bytes), board size (1 byte), plies (1 byte), 2 unused bytes,
+//   the number of slots (4 bytes, a power of two), then per slot
+//   the canonical hash (8 bytes) and the move's cell + 1, or 0 if empty (4 bytes)
+// A lookup is safe from any thread.
+public class OpeningBook {
+    private static final int MAGIC = 0x50434F42;
+    private static final int HEADER_BYTES = 12;
+    private static final int SLOT_BYTES = 12;
+
+    private final MappedByteBuffer table;
+    private final int size;
+    private final int plies;
+    private final int mask;
+
+    private OpeningBook(MappedByteBuffer table) throws IOException {
+        this.table = table;
+        if (table.capacity() < HEADER_BYTES || table.getInt(0) != MAGIC)
+            throw new IOException("Not an opening book");
+        size = table.get(4) & 0xFF;
+        plies = table.get(5) & 0xFF;
+        int slots = table.getInt(8);
+        if (Integer.bitCount(slots) != 1 || table.capacity() != HEADER_BYTES + (long) slots * SLOT_BYTES)
+            throw new IOException("The opening book is damaged");
+        mask = slots - 1;
+    }
+
+    // Maps a book file into memory
+    // Throws IOException if the file is not an opening book
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Returns the board size the book is for
+    public int getSize() {
+        return size;
+    }
+
+    // Returns the number of plies from the empty board the book covers
+    public int getPlies() {
+        return plies;
+    }
+
+    // Spreads the hash over the slots; Zobrist hashes are already random,
+    // but the empty board hashes to 0
+    private static int slot(long key, int mask) {
+        return (int) (key ^ key >>> 32) * 0x9E3779B9 & mask;
+    }
+
+    // Returns the book move for the position, or null if it is not in the book
+    public Move lookup(Game game) {
+        if (game.getSize() != size || game.isOver()) return null;
+        long[] hashes = Symmetry.hashes(game);
+        int t = 0;
+        for (int i = 1; i < Symmetry.COUNT; i++)
+            if (hashes[i] < hashes[t]) t = i;
+        long key = hashes[t];
+        for (int i = slot(key, mask);; i = i + 1 & mask) {
+            int offset = HEADER_BYTES + i * SLOT_BYTES;
+            int move = table.getInt(offset + 8);
+            if (move == 0) return null;
+            if (table.getLong(offset) == key) {
+                int cell = Symmetry.transform(Symmetry.inverse(t), move - 1, size);
+                return new MoveImpl(cell / size, cell % size);
+            }
+        }
+    }
+
+    // Searches every position reachable from the empty board in fewer than plies
+    // moves and writes the best moves to a book file
+    // ais creates one AI per thread, since AIs keep state between moves
+    public static void generate(int size, int plies, Supplier<AI> ais, int threads, Path file) throws IOException {
+        if (size < 1 || size > 255) throw new IllegalArgumentException("Board size must be between 1 and 255");
+        if (plies < 1 || plies > 255) throw new IllegalArgumentException("plies must be between 1 and 255");
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+
+        // One game for each canonical position, a ply at a time, in a fixed order
+        List<Game> positions = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        Map<Long, Game> level = new LinkedHashMap<>();
+        Game empty = new GameImpl(size);
+        level.put(Symmetry.canonicalHash(empty), empty);
+        for (int ply = 0; ply < plies && !level.isEmpty(); ply++) {
+            Map<Long, Game> nextLevel = new LinkedHashMap<>();
+            for (Map.Entry<Long, Game> entry : level.entrySet()) {
+                Game game = entry.getValue();
+                positions.add(game);
+                keys.add(entry.getKey());
+                if (ply + 1 == plies) continue;
+                for (Move move : game.getMoves()) {
+                    Game child = game.copy();
+                    child.makeMove(move);
+                    if (!child.isOver()) nextLevel.putIfAbsent(Symmetry.canonicalHash(child), child);
+                }
+            }
+            level = nextLevel;
+        }
+
+        // Search them, each thread taking every threads-th position
+        int[] moves = new int[positions.size()];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int first = i;
+                tasks.add(() -> {
+                    AI ai = ais.get();
+                    for (int p = first; p < moves.length; p += threads) {
+                        Game game = positions.get(p);
+                        Move move = ai.getCurrentPlayerMove(game);
+                        // Stored for the canonical form
+                        int t = Symmetry.canonicalTransform(game);
+                        moves[p] = Symmetry.transform(t, move.getRow() * size + move.getCol(), size);
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : pool.invokeAll(tasks))
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the book", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A search failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        // At most half full, so probes stay short
+        int slots = Integer.highestOneBit(Math.max(1, moves.length) * 2 - 1) << 1;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + slots * SLOT_BYTES);
+        buffer.putInt(MAGIC).put((byte) size).put((byte) plies).putShort((short) 0).putInt(slots);
+        int slotMask = slots - 1;
+        for (int p = 0; p < moves.length; p++) {
+            long key = keys.get(p);
+            int i = slot(key, slotMask);
+            while (buffer.getInt(HEADER_BYTES + i * SLOT_BYTES + 8) != 0)
+                i = i + 1 & slotMask;
+            buffer.putLong(HEADER_BYTES + i * SLOT_BYTES, key);
+            buffer.putInt(HEADER_BYTES + i * SLOT_BYTES + 8, moves[p] + 1);
+        }
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    // Arguments: [size] [plies] [depth] [file]
+    // By default the first 4 plies on 5x5, searched to depth 5 as in PlayVsAI
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Path file = Path.of(args.length > 3 ? args[3] : "opening" + size + ".book");
+        long start = System.nanoTime();
+        generate(size, plies, () -> new Minimax(depth, new MinPiecesHeuristic(), true),
+                Runtime.getRuntime().availableProcessors(), file);
+        System.out.printf("Wrote %s in %.1f s%n", file, (System.nanoTime() - start) / 1e9);
+    }
+}
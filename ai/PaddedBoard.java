@@ -0,0 +1,51 @@
+package ai;
+
+import java.util.Arrays;
+
+import game.*;
+
+// A copy of a board with a border around it, for the path distance code of
+// DistanceHeuristic and ThreatDetector
+// Cells are indexed (row + 1) * width + (col + 1), where width = size + 2, so
+// every board cell has four neighbours and nothing needs a bounds check.
+final class PaddedBoard {
+    // Larger than any distance on a board, and small enough to add to without overflow
+    static final int INFINITY = 1 << 20;
+    static final int BORDER = -1;
+
+    final int size;
+    final int width;
+    final int cells;
+    // The PieceColour ordinal on each cell, or BORDER
+    final int[] pieces;
+    // The index differences to the neighbours above, below, left and right
+    final int[] neighbours;
+
+    PaddedBoard(int size) {
+        this.size = size;
+        width = size + 2;
+        cells = width * width;
+        pieces = new int[cells];
+        neighbours = new int[] { -width, width, -1, 1 };
+        Arrays.fill(pieces, BORDER);
+    }
+
+    int index(int row, int col) {
+        return (row + 1) * width + col + 1;
+    }
+
+    // Copies the pieces of the game, which must have this board's size
+    void load(Game game) {
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                pieces[index(row, col)] = game.getPiece(row, col).ordinal();
+    }
+
+    // Returns what a cell costs the player (a PieceColour ordinal) on a path:
+    // 0 for their own piece, 1 for an empty cell, or -1 if they cannot cross it
+    int cost(int player, int cell) {
+        int piece = pieces[cell];
+        if (piece == 0) return 1;
+        return piece == player ? 0 : -1;
+    }
+}
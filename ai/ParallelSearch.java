@@ -0,0 +1,183 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import game.*;
+
+// A Minimax search to a fixed depth that uses several cores
+//
+// ROOT_SPLIT searches the root moves as separate tasks on a ForkJoinPool.
+// The best score found so far is shared through an AtomicLong and used as the
+// lower edge of every later task's window. For a given seed the move chosen
+// is the same whatever the thread count or timing: the window keeps every move
+// that ties with the best score exact, and ties go to the earliest root move in
+// MoveOrdering's order. That is also the move the sequential in-place Minimax
+// chooses with the same seed.
+//
+// LAZY_SMP runs a complete iterative deepening search on every thread, all
+// sharing one lock-free transposition table. Helper threads use different
+// move-order seeds, so they fill the table with results the main thread then
+// reuses. The main thread's move is returned. No thread searches deeper than
+// the depth, so every entry is a result for the depth the main thread needs,
+// and its score is the single-threaded search's. When several moves share that
+// score, the one picked depends on what the helpers stored first.
+//
+// Heuristics keep per-instance buffers, so each search thread gets its own
+// from the supplier.
+public class ParallelSearch implements AI {
+    public enum Mode { ROOT_SPLIT, LAZY_SMP }
+
+    private final Mode mode;
+    private final int depth;
+    private final Supplier<Heuristic> heuristics;
+    private final int threads;
+    private final long seed;
+    private final ForkJoinPool pool;
+    private final TranspositionTable sharedTable;
+    private boolean symmetryPruning;
+    private volatile long lastScore;
+
+    // Creates a search with a 64 MB shared table for LAZY_SMP
+    public ParallelSearch(Mode mode, int depth, Supplier<Heuristic> heuristics, int threads, long seed) {
+        this(mode, depth, heuristics, threads, seed, mode == Mode.LAZY_SMP ? new TranspositionTable(64) : null);
+    }
+
+    // depth is the number of moves ahead to look
+    // heuristics creates one heuristic per search thread
+    // threads is the number of search threads, seed fixes the move order
+    // table is shared by the LAZY_SMP threads and ignored by ROOT_SPLIT
+    public ParallelSearch(Mode mode, int depth, Supplier<Heuristic> heuristics, int threads, long seed,
+            TranspositionTable table) {
+        if (depth < 1) throw new IllegalArgumentException("depth must be at least 1");
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (mode == Mode.LAZY_SMP && table == null)
+            throw new IllegalArgumentException("LAZY_SMP needs a transposition table");
+        this.mode = mode;
+        this.depth = depth;
+        this.heuristics = heuristics;
+        this.threads = threads;
+        this.seed = seed;
+        this.pool = new ForkJoinPool(threads);
+        this.sharedTable = table;
+    }
+
+    // Stops the worker threads once the running search is finished
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Searches only one of each set of symmetric root moves; see Minimax.setSymmetryPruning
+    public void setSymmetryPruning(boolean symmetryPruning) {
+        this.symmetryPruning = symmetryPruning;
+    }
+
+    // Returns the score of the previous call's move for the player who was to move,
+    // as the in-place Minimax scores it; see Minimax.getLastScore
+    public long getLastScore() {
+        return lastScore;
+    }
+
+    @Override
+    public Move getCurrentPlayerMove(Game game) {
+        if (game.isOver()) throw new IllegalArgumentException("There are no moves to choose from");
+        try {
+            return mode == Mode.ROOT_SPLIT ? rootSplit(game) : lazySmp(game);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A search thread failed", e.getCause());
+        }
+    }
+
+    private Move rootSplit(Game game) throws InterruptedException, ExecutionException {
+        // The root moves in the order the sequential search would try them
+        int size = game.getSize();
+        MoveOrdering ordering = new MoveOrdering(seed);
+        ordering.prepare(size, 1);
+        int[] cells = new int[size * size];
+        int count = ordering.generate(game, 0, cells);
+        if (symmetryPruning) count = Symmetry.distinctMoves(game, cells, count);
+        List<Move> moves = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            moves.add(new MoveImpl(cells[i] / size, cells[i] % size));
+
+        AtomicLong bestSoFar = new AtomicLong(-Minimax.WIN);
+        long[] scores = new long[moves.size()];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) {
+            int index = i;
+            tasks.add(() -> {
+                Game child = game.copy();
+                child.makeMove(moves.get(index));
+                Minimax searcher = new Minimax(depth, heuristics.get(), true);
+                searcher.setSeed(seed + index);
+                // Anything that could tie the best so far is searched exactly,
+                // anything worse only has to be shown to be worse
+                long alpha = bestSoFar.get() - 1;
+                long score = -searcher.searchScore(child, depth - 1, -Minimax.WIN, -alpha);
+                scores[index] = score;
+                bestSoFar.accumulateAndGet(score, Math::max);
+                return null;
+            });
+        }
+        for (Future<Void> result : pool.invokeAll(tasks))
+            result.get();
+
+        int best = 0;
+        for (int i = 1; i < scores.length; i++)
+            if (scores[i] > scores[best]) best = i;
+        // A win scores from the child, one ply nearer than from the root
+        long score = scores[best];
+        lastScore = score >= Minimax.WON ? score - 1 : score <= -Minimax.WON ? score + 1 : score;
+        return moves.get(best);
+    }
+
+    private Move lazySmp(Game game) throws InterruptedException, ExecutionException {
+        sharedTable.newSearch();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Callable<Move>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int index = i;
+            tasks.add(() -> {
+                Minimax searcher = new Minimax(depth, heuristics.get(), true);
+                searcher.setTranspositionTable(sharedTable);
+                searcher.setSymmetryPruning(symmetryPruning);
+                searcher.setSeed(seed + index);
+                searcher.startMove();
+                Move move = null;
+                if (index == 0) {
+                    // The main thread sets the result and then stops the helpers
+                    for (int d = 1; d <= depth; d++)
+                        move = searcher.searchRoot(game, d, 0);
+                    lastScore = searcher.getLastScore();
+                    stop.set(true);
+                } else {
+                    searcher.setStopFlag(stop);
+                    try {
+                        for (int d = 1; d <= depth; d++)
+                            searcher.searchRoot(game, d, 0);
+                    } catch (Minimax.SearchAborted e) {
+                        // Stopped by the main thread
+                    }
+                }
+                return move;
+            });
+        }
+        List<Future<Move>> results = new ArrayList<>();
+        for (Callable<Move> task : tasks)
+            results.add(pool.submit(task));
+        Move move = results.get(0).get();
+        for (Future<Move> result : results)
+            result.get();
+        return move;
+    }
+}
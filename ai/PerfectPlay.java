@@ -0,0 +1,318 @@
+package ai;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import game.*;
+
+// The solved game for boards of up to 4x4, and an AI that plays it perfectly
+// build works out the result of every position, the level of positions with
+// n pieces at a time from the full board down to the empty one. A position's
+// result then only depends on the level below it, which is already done, so
+// no search is needed: it is retrograde analysis. Each level is shared out
+// between threads, which write disjoint entries.
+//
+// The database is a file, memory-mapped while it is built and read:
+//   "PCPP" (4 bytes), board size (1 byte), the number of levels finished (1 byte),
+//   2 unused bytes, then one byte per position
+// where a position with white pieces W and black pieces B (bit masks of cells)
+// is at the base 3 index sum(3^cell for W) + 2 * sum(3^cell for B). An entry has the
+// result for the player to move in its top 2 bits (1 win, 2 loss, 3 draw, 0
+// not worked out) and the number of moves to the end of the game with perfect
+// play in the rest, where the winner hurries and the loser holds out.
+//
+// After each level the file is forced to disk and the header updated, so an
+// interrupted build resumes from the last finished level. Boards of 5x5 have
+// 3^25 (almost 10^12) positions, which is too many even with 8-fold symmetry.
+public class PerfectPlay implements AI {
+    // The largest board size that can be solved
+    public static final int MAX_SIZE = 4;
+
+    private static final int MAGIC = 0x50435050;
+    private static final int HEADER_BYTES = 8;
+    private static final int WIN = 1, LOSS = 2, DRAW = 3;
+
+    private final MappedByteBuffer entries;
+    private final int size;
+    private final int[] powers;
+
+    private PerfectPlay(MappedByteBuffer entries, int size) {
+        this.entries = entries;
+        this.size = size;
+        this.powers = ternary(size);
+    }
+
+    // Returns the base 3 value of every bit mask of the board's cells
+    private static int[] ternary(int size) {
+        int cells = size * size;
+        int[] powers = new int[1 << cells];
+        for (int mask = 1; mask < powers.length; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            int power = 1;
+            for (int i = 0; i < low; i++)
+                power *= 3;
+            powers[mask] = powers[mask & mask - 1] + power;
+        }
+        return powers;
+    }
+
+    private static long positions(int size) {
+        long positions = 1;
+        for (int i = 0; i < size * size; i++)
+            positions *= 3;
+        return positions;
+    }
+
+    // Opens a finished database
+    // Throws IOException if the file is not a database or its build has not finished
+    public static PerfectPlay open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) throw new IOException(file + " is not a perfect play database");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = buffer.get(4);
+            if (buffer.getInt(0) != MAGIC || size < 1 || size > MAX_SIZE
+                    || channel.size() != HEADER_BYTES + positions(size))
+                throw new IOException(file + " is not a perfect play database");
+            if (buffer.get(5) != size * size + 1) throw new IOException("The build of " + file + " has not finished");
+            return new PerfectPlay(buffer, size);
+        }
+    }
+
+    // Solves every position of the board size into the file, resuming an earlier
+    // build of the same file if there is one
+    public static void build(int size, int threads, Path file) throws IOException {
+        build(size, threads, file, Integer.MAX_VALUE);
+    }
+
+    // Like build, but stops after working out the given number of levels, and
+    // returns true if the database is then finished
+    public static boolean build(int size, int threads, Path file, int levels) throws IOException {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Board size must be between 1 and " + MAX_SIZE);
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        int cells = size * size;
+        long length = HEADER_BYTES + positions(size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long existing = channel.size();
+            if (existing != 0 && existing != length)
+                throw new IOException(file + " is not a perfect play database for " + size + "x" + size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (existing == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.put(4, (byte) size);
+            } else if (buffer.getInt(0) != MAGIC || buffer.get(4) != size) {
+                throw new IOException(file + " is not a perfect play database for " + size + "x" + size);
+            }
+            int[] powers = ternary(size);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                // Level n holds the positions with n pieces; the header counts finished levels from the top
+                for (int done = buffer.get(5); done <= cells && levels > 0; done++, levels--) {
+                    int pieces = cells - done;
+                    List<Callable<Void>> tasks = new ArrayList<>();
+                    for (int i = 0; i < threads; i++) {
+                        int first = i;
+                        tasks.add(() -> {
+                            solveLevel(buffer, size, powers, pieces, first, threads);
+                            return null;
+                        });
+                    }
+                    for (Future<Void> result : pool.invokeAll(tasks))
+                        result.get();
+                    buffer.force();
+                    buffer.put(5, (byte) (done + 1));
+                    buffer.force();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while solving", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A solving thread failed", e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+            return buffer.get(5) == cells + 1;
+        }
+    }
+
+    // Works out the positions with the given number of pieces whose white mask is
+    // first, first + stride, first + 2 * stride, ... among the masks of the right size
+    private static void solveLevel(MappedByteBuffer buffer, int size, int[] powers, int pieces, int first,
+            int stride) {
+        int cells = size * size;
+        int full = (1 << cells) - 1;
+        int whites = (pieces + 1) / 2, blacks = pieces / 2;
+        boolean whiteToMove = pieces % 2 == 0;
+        int seen = 0;
+        for (int white = 0; white <= full; white++) {
+            if (Integer.bitCount(white) != whites || seen++ % stride != first) continue;
+            boolean whitePath = hasPath(white, size);
+            int free = full & ~white;
+            // Every subset of the free cells, down to the empty set
+            for (int black = free;; black = black - 1 & free) {
+                if (Integer.bitCount(black) == blacks) {
+                    int entry;
+                    if (whitePath || hasPath(black, size)) entry = LOSS << 6;
+                    else if (pieces == cells) entry = DRAW << 6;
+                    else entry = combine(buffer, powers, white, black, full, whiteToMove);
+                    buffer.put(HEADER_BYTES + powers[white] + 2 * powers[black], (byte) entry);
+                }
+                if (black == 0) break;
+            }
+        }
+    }
+
+    // Works out a position from the entries of the positions after each move
+    private static int combine(MappedByteBuffer buffer, int[] powers, int white, int black, int full,
+            boolean whiteToMove) {
+        int empty = full & ~white & ~black;
+        int fastestWin = Integer.MAX_VALUE, slowestLoss = -1;
+        boolean draw = false;
+        for (int moves = empty; moves != 0; moves &= moves - 1) {
+            int cell = moves & -moves;
+            int index = whiteToMove ? powers[white | cell] + 2 * powers[black]
+                    : powers[white] + 2 * powers[black | cell];
+            int child = buffer.get(HEADER_BYTES + index) & 0xFF;
+            int distance = (child & 63) + 1;
+            // The child's result is for the opponent
+            switch (child >>> 6) {
+                case LOSS -> fastestWin = Math.min(fastestWin, distance);
+                case WIN -> slowestLoss = Math.max(slowestLoss, distance);
+                default -> draw = true;
+            }
+        }
+        if (fastestWin != Integer.MAX_VALUE) return WIN << 6 | fastestWin;
+        if (draw) return DRAW << 6 | Integer.bitCount(empty);
+        return LOSS << 6 | slowestLoss;
+    }
+
+    // True if the cells of the mask connect top to bottom or left to right
+    private static boolean hasPath(int mask, int size) {
+        int top = (1 << size) - 1;
+        int bottom = top << size * (size - 1);
+        int left = 0;
+        for (int row = 0; row < size; row++)
+            left |= 1 << row * size;
+        int right = left << size - 1;
+        return connects(mask, top, bottom, left, right, size) || connects(mask, left, right, left, right, size);
+    }
+
+    // True if the cells of the mask reachable from the from edge include one on the to edge
+    private static boolean connects(int mask, int from, int to, int left, int right, int size) {
+        int reached = mask & from;
+        while (true) {
+            int grown = reached | reached << size | reached >>> size
+                    | (reached & ~right) << 1 | (reached & ~left) >>> 1;
+            grown &= mask;
+            if ((grown & to) != 0) return true;
+            if (grown == reached) return false;
+            reached = grown;
+        }
+    }
+
+    private int entry(Game game) {
+        if (game.getSize() != size) throw new IllegalArgumentException("The database is for " + size + "x" + size);
+        int white = 0, black = 0;
+        for (int cell = 0; cell < size * size; cell++) {
+            PieceColour piece = game.getPiece(cell / size, cell % size);
+            if (piece == PieceColour.WHITE) white |= 1 << cell;
+            else if (piece == PieceColour.BLACK) black |= 1 << cell;
+        }
+        return entries.get(HEADER_BYTES + powers[white] + 2 * powers[black]) & 0xFF;
+    }
+
+    // Returns the result of the position for the player to move with perfect play
+    // A finished game is a LOSS, or a DRAW when the board is full with no path
+    public ProofNumberSearch.Result result(Game game) {
+        return switch (entry(game) >>> 6) {
+            case WIN -> ProofNumberSearch.Result.WIN;
+            case LOSS -> ProofNumberSearch.Result.LOSS;
+            case DRAW -> ProofNumberSearch.Result.DRAW;
+            default -> ProofNumberSearch.Result.UNKNOWN;
+        };
+    }
+
+    // Returns the number of moves left in the game with perfect play
+    public int distance(Game game) {
+        return entry(game) & 63;
+    }
+
+    // True if the move keeps the result of the position: it still wins a won
+    // position or draws a drawn one, as any move of a lost position does
+    // This is the ground truth for measuring how well other AIs play.
+    public boolean keepsResult(Game game, Move move) {
+        int want = entry(game) >>> 6;
+        Game after = game.copy();
+        after.makeMove(move);
+        int child = entry(after) >>> 6;
+        return switch (want) {
+            case WIN -> child == LOSS;
+            case DRAW -> child == DRAW;
+            default -> true;
+        };
+    }
+
+    // Wins as fast as possible, draws if it cannot win, and otherwise loses as slowly as possible
+    @Override
+    public Move getCurrentPlayerMove(Game game) {
+        if (game.isOver()) throw new IllegalArgumentException("There are no moves to choose from");
+        int want = entry(game);
+        for (Move move : game.getMoves()) {
+            Game after = game.copy();
+            after.makeMove(move);
+            int child = entry(after);
+            boolean keeps = switch (want >>> 6) {
+                case WIN -> child >>> 6 == LOSS && (child & 63) + 1 == (want & 63);
+                case LOSS -> child >>> 6 == WIN && (child & 63) + 1 == (want & 63);
+                default -> child >>> 6 == DRAW;
+            };
+            if (keeps) return move;
+        }
+        throw new IllegalStateException("The database does not match the game");
+    }
+
+    // Arguments: [size] [threads] [file]
+    // By default solves 4x4 on every core into perfect4.db, resuming if it exists,
+    // then measures how often Minimax keeps the result of random positions
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Path file = Path.of(args.length > 2 ? args[2] : "perfect" + size + ".db");
+        long start = System.nanoTime();
+        build(size, threads, file);
+        PerfectPlay database = open(file);
+        Game empty = new GameImpl(size);
+        System.out.printf("Solved %dx%d in %.1f s: the first player's result is %s in %d moves%n", size, size,
+                (System.nanoTime() - start) / 1e9, database.result(empty), database.distance(empty));
+
+        Random random = new Random(1);
+        for (int depth = 1; depth <= 4; depth++) {
+            AI ai = new Minimax(depth, new MinPiecesHeuristic(), true);
+            int positions = 0, kept = 0;
+            while (positions < 1000) {
+                Game game = new GameImpl(size);
+                int moves = random.nextInt(size * size);
+                for (int i = 0; i < moves && !game.isOver(); i++) {
+                    List<Move> legal = new ArrayList<>(game.getMoves());
+                    game.makeMove(legal.get(random.nextInt(legal.size())));
+                }
+                // Lost positions have no wrong moves
+                if (game.isOver() || database.result(game) == ProofNumberSearch.Result.LOSS) continue;
+                positions++;
+                if (database.keepsResult(game, ai.getCurrentPlayerMove(game))) kept++;
+            }
+            System.out.printf("Minimax to depth %d keeps the result in %d of %d positions%n", depth, kept, positions);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package ai;
 
 import game.*;
+import java.io.IOException;
+import java.nio.file.*;
 import java.util.*;
 
 public class PlayVsAI {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // By default, a board of size 5 is used
         // Increasing the size of the board will make the AI slower
         Game game = new GameImpl(5);
@@ -13,6 +15,16 @@ public class PlayVsAI {
         // Increase the depth to make the AI slower, but more powerful
         // The AI gets very slow very quickly as the depth increases!
         AI ai = new Minimax(5, new MinPiecesHeuristic());
+        // On larger boards, a fixed time per move is more predictable than a fixed depth:
+        // AI ai = new IterativeDeepening(1000, new MinPiecesHeuristic(), new TranspositionTable(64));
+        // On boards of 11x11 and up, Monte Carlo tree search plays far better in the same time
+        // (call setIterations(0) and setTimeBudget(1000) on it to do the same)
+        // AI ai = new MonteCarloTreeSearch(Runtime.getRuntime().availableProcessors(), 1);
+
+        // The first moves come from an opening book if one has been generated
+        // for this board size with: java -cp bin ai.OpeningBook
+        Path bookFile = Path.of("opening" + game.getSize() + ".book");
+        if (Files.exists(bookFile)) ai = new BookAI(OpeningBook.open(bookFile), ai);
 
         // Change this to PieceColour.BLACK if you want to play as white
         PieceColour aiColour = PieceColour.WHITE;
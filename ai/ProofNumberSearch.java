@@ -0,0 +1,242 @@
+package ai;
+
+import java.util.Arrays;
+
+import game.*;
+
+// Solves positions exactly with depth-first proof-number search (df-pn)
+// Proof-number search answers a yes/no question, here "can the attacker force a
+// win?". Every node has a proof number, the least number of leaves that would
+// have to be shown to be wins to prove it, and a disproof number, the same for
+// disproving it. The search always expands the most proving node, so it goes
+// deep along forcing lines and ignores the rest of the tree. Depth-first
+// proof-number search gets the same order with a bounded stack by searching
+// each child only while its numbers stay under thresholds from its parent,
+// keeping the numbers of all other nodes in a transposition table.
+//
+// Draws are possible, so a position is solved with up to two searches: whether
+// the player to move can force a win, and if not, whether the opponent can.
+//
+// The table has its own fixed size and packs a key and both numbers per slot,
+// replacing whatever was there. It is kept between calls, as a solved position
+// stays solved. A node budget bounds the time spent on a position that turns
+// out to be too hard. An instance is not safe to share between threads.
+public class ProofNumberSearch {
+    // The result of a position for the player to move
+    public enum Result { WIN, LOSS, DRAW, UNKNOWN }
+
+    private static final int INFINITY = 1 << 30;
+    // Mixed into the keys of searches where black attacks, so both kinds of search share the table
+    private static final long BLACK_ATTACKS = 0x6A09E667F3BCC909L;
+
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final int mask;
+    private long nodeBudget;
+    private long nodes;
+
+    // The search in progress
+    private Game game;
+    private int size;
+    private Move[] cellMoves;
+    private int[][] childBuffers;
+    private PieceColour attacker;
+    private long attackerKey;
+    private int rootChoice;
+
+    private Move bestMove;
+
+    // Thrown to unwind a search that has used up its node budget
+    private static final class BudgetExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final BudgetExceeded INSTANCE = new BudgetExceeded();
+
+        private BudgetExceeded() {
+            super("The node budget is used up", null, false, false);
+        }
+    }
+
+    // Creates a solver with a table of about the given number of megabytes
+    // and a budget of nodeBudget expanded nodes per position
+    public ProofNumberSearch(int megabytes, long nodeBudget) {
+        if (megabytes < 1) throw new IllegalArgumentException("The table needs at least 1 megabyte");
+        if (nodeBudget < 1) throw new IllegalArgumentException("nodeBudget must be at least 1");
+        long entries = Long.highestOneBit(((long) megabytes << 20) / 16);
+        entries = Math.min(entries, 1 << 30);
+        keys = new long[(int) entries];
+        proofs = new int[(int) entries];
+        disproofs = new int[(int) entries];
+        mask = (int) entries - 1;
+        this.nodeBudget = nodeBudget;
+    }
+
+    // Sets the number of nodes that may be expanded per position
+    public void setNodeBudget(long nodeBudget) {
+        if (nodeBudget < 1) throw new IllegalArgumentException("nodeBudget must be at least 1");
+        this.nodeBudget = nodeBudget;
+    }
+
+    // Returns the number of nodes expanded by the last call to solve
+    public long getNodes() {
+        return nodes;
+    }
+
+    // Returns a move that achieves the result of the last call to solve, when it
+    // was a WIN or a DRAW, and null otherwise
+    public Move getBestMove() {
+        return bestMove;
+    }
+
+    // Forgets every stored result
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(proofs, 0);
+        Arrays.fill(disproofs, 0);
+    }
+
+    // Works out the result of the position for the player to move, or UNKNOWN
+    // if the node budget runs out first
+    // Throws IllegalArgumentException if the game is over
+    public Result solve(Game root) {
+        if (root.isOver()) throw new IllegalArgumentException("There are no moves to choose from");
+        nodes = 0;
+        bestMove = null;
+        game = root.copy();
+        if (size != game.getSize() || cellMoves == null) {
+            size = game.getSize();
+            cellMoves = new Move[size * size];
+            for (int cell = 0; cell < cellMoves.length; cell++)
+                cellMoves[cell] = new MoveImpl(cell / size, cell % size);
+            childBuffers = new int[cellMoves.length + 1][cellMoves.length];
+        }
+        PieceColour mover = game.currentPlayer();
+        PieceColour opponent = mover == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE;
+        try {
+            if (prove(mover)) {
+                bestMove = cellMoves[rootChoice];
+                return Result.WIN;
+            }
+            if (prove(opponent)) return Result.LOSS;
+            // The opponent's proof failed at the root, so some move stops every win
+            bestMove = cellMoves[rootChoice];
+            return Result.DRAW;
+        } catch (BudgetExceeded e) {
+            return Result.UNKNOWN;
+        } finally {
+            game = null;
+        }
+    }
+
+    // Returns true if the attacker can force a win from the root, false if not
+    private boolean prove(PieceColour attacker) {
+        this.attacker = attacker;
+        attackerKey = attacker == PieceColour.BLACK ? BLACK_ATTACKS : 0;
+        search(0, INFINITY, INFINITY);
+        int slot = find(game.hashKey() ^ attackerKey);
+        return slot >= 0 && proofs[slot] == 0;
+    }
+
+    private int slot(long key) {
+        return (int) (key ^ key >>> 32) & mask;
+    }
+
+    // Returns the slot holding the key, or -1 if it is not in the table
+    // A key of 0 is stored as 1, which makes one more position in 2^64 share a slot
+    private int find(long key) {
+        if (key == 0) key = 1;
+        int slot = slot(key);
+        return keys[slot] == key ? slot : -1;
+    }
+
+    private void store(long key, int proof, int disproof) {
+        if (key == 0) key = 1;
+        int slot = slot(key);
+        keys[slot] = key;
+        proofs[slot] = proof;
+        disproofs[slot] = disproof;
+    }
+
+    // Adds proof or disproof numbers, stopping at INFINITY
+    private static int add(int a, int b) {
+        return (int) Math.min(INFINITY, (long) a + b);
+    }
+
+    // Expands the current position until its proof number reaches thProof or its
+    // disproof number reaches thDisproof, and stores both
+    private void search(int ply, int thProof, int thDisproof) {
+        if (++nodes > nodeBudget) throw BudgetExceeded.INSTANCE;
+        long key = game.hashKey() ^ attackerKey;
+        PieceColour mover = game.currentPlayer();
+        boolean attacking = mover == attacker;
+
+        int[] children = childBuffers[ply];
+        int count = 0;
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                if (game.getPiece(row, col) == PieceColour.NONE) children[count++] = row * size + col;
+
+        int proof, disproof;
+        while (true) {
+            // An OR node (attacker to move) needs one child proved and all disproved,
+            // an AND node the other way round
+            proof = attacking ? INFINITY : 0;
+            disproof = attacking ? 0 : INFINITY;
+            int best = -1, bestProof = 0, bestDisproof = 0, second = INFINITY;
+            for (int i = 0; i < count; i++) {
+                int cell = children[i];
+                long childKey = key ^ Zobrist.key(mover, cell) ^ Zobrist.SIDE;
+                int childProof, childDisproof;
+                int slot = find(childKey);
+                if (slot >= 0) {
+                    childProof = proofs[slot];
+                    childDisproof = disproofs[slot];
+                } else {
+                    // A new child: finished games are settled, others start at 1 and 1
+                    game.makeMove(cellMoves[cell]);
+                    if (game.isOver()) {
+                        boolean won = game.winner() == attacker;
+                        childProof = won ? 0 : INFINITY;
+                        childDisproof = won ? INFINITY : 0;
+                    } else {
+                        childProof = childDisproof = 1;
+                    }
+                    game.undoMove(cellMoves[cell]);
+                    store(childKey, childProof, childDisproof);
+                }
+                int value = attacking ? childProof : childDisproof;
+                if (best < 0 || value < (attacking ? bestProof : bestDisproof)) {
+                    if (best >= 0) second = attacking ? bestProof : bestDisproof;
+                    best = cell;
+                    bestProof = childProof;
+                    bestDisproof = childDisproof;
+                } else if (value < second) {
+                    second = value;
+                }
+                if (attacking) {
+                    proof = Math.min(proof, childProof);
+                    disproof = add(disproof, childDisproof);
+                } else {
+                    proof = add(proof, childProof);
+                    disproof = Math.min(disproof, childDisproof);
+                }
+            }
+            if (ply == 0) rootChoice = best;
+            if (proof >= thProof || disproof >= thDisproof) break;
+
+            // Search the most proving child until it is no longer the best one
+            int childThProof, childThDisproof;
+            if (attacking) {
+                childThProof = Math.min(thProof, add(second, 1));
+                childThDisproof = thDisproof - disproof + bestDisproof;
+            } else {
+                childThProof = thProof - proof + bestProof;
+                childThDisproof = Math.min(thDisproof, add(second, 1));
+            }
+            game.makeMove(cellMoves[best]);
+            search(ply + 1, childThProof, childThDisproof);
+            game.undoMove(cellMoves[best]);
+        }
+        store(key, proof, disproof);
+    }
+}
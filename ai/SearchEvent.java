@@ -0,0 +1,38 @@
+package ai;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Java Flight Recorder event for one Minimax search, filled in by SearchStats
+// Its duration is the time taken to choose the move.
+@Name("ai.Search")
+@Label("Minimax Search")
+@Category("Path Connection Game")
+@Description("Choosing one move with the Minimax search")
+class SearchEvent extends Event {
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Leaf Evaluations")
+    long leafEvaluations;
+
+    @Label("Beta Cutoffs")
+    long betaCutoffs;
+
+    @Label("First Move Cutoff Rate")
+    double firstMoveCutoffRate;
+
+    @Label("Heuristic Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long heuristicNanos;
+
+    @Label("Effective Branching Factor")
+    double effectiveBranchingFactor;
+}
@@ -0,0 +1,183 @@
+package ai;
+
+import java.util.Arrays;
+
+// Counters describing what a Minimax search did while choosing a move
+// Attach an instance with Minimax.setStats (or IterativeDeepening.setStats) and
+// read it after getCurrentPlayerMove returns. Each call starts the counts again.
+//
+// Without stats attached the search only pays for a null check at each node.
+// With them attached every leaf evaluation is timed with System.nanoTime, which
+// costs a few tens of nanoseconds per leaf, so heuristic times include that.
+//
+// While a Java Flight Recorder recording is running, each finished search is also
+// recorded as an ai.Search event. An instance is not safe to share between threads.
+public class SearchStats {
+    private long[] nodesPerPly = new long[16];
+    private int maxPly = -1;
+    private long nodes;
+    private long betaCutoffs;
+    private long firstMoveCutoffs;
+    private long leafEvaluations;
+    private long heuristicNanos;
+    private long startNanos;
+    private long elapsedNanos;
+    private int depth;
+    private SearchEvent event;
+
+    // Clears the counts and starts the clock
+    void start() {
+        Arrays.fill(nodesPerPly, 0);
+        maxPly = -1;
+        nodes = betaCutoffs = firstMoveCutoffs = leafEvaluations = heuristicNanos = 0;
+        elapsedNanos = 0;
+        depth = 0;
+        event = new SearchEvent();
+        event.begin();
+        startNanos = System.nanoTime();
+    }
+
+    // Stops the clock, given the depth of the deepest search that completed
+    void finish(int depth) {
+        elapsedNanos = System.nanoTime() - startNanos;
+        this.depth = depth;
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.nodes = nodes;
+            event.leafEvaluations = leafEvaluations;
+            event.betaCutoffs = betaCutoffs;
+            event.firstMoveCutoffRate = getFirstMoveCutoffRate();
+            event.heuristicNanos = heuristicNanos;
+            event.effectiveBranchingFactor = getEffectiveBranchingFactor();
+            event.commit();
+        }
+        event = null;
+    }
+
+    // Counts a node at the given distance from the root
+    void node(int ply) {
+        if (ply >= nodesPerPly.length)
+            nodesPerPly = Arrays.copyOf(nodesPerPly, Math.max(ply + 1, 2 * nodesPerPly.length));
+        nodesPerPly[ply]++;
+        maxPly = Math.max(maxPly, ply);
+        nodes++;
+    }
+
+    // Counts a beta cutoff, and whether the first move tried caused it
+    void cutoff(boolean firstMove) {
+        betaCutoffs++;
+        if (firstMove) firstMoveCutoffs++;
+    }
+
+    // Counts a heuristic evaluation that took the given time
+    void leaf(long nanos) {
+        leafEvaluations++;
+        heuristicNanos += nanos;
+    }
+
+    // Returns the depth of the deepest search that completed
+    public int getDepth() {
+        return depth;
+    }
+
+    // Returns the number of nodes visited, including the root
+    public long getNodes() {
+        return nodes;
+    }
+
+    // Returns the number of nodes visited at the given distance from the root
+    // The root is at ply 0. Iterative deepening adds up the nodes of every iteration.
+    public long getNodes(int ply) {
+        return ply >= 0 && ply < nodesPerPly.length ? nodesPerPly[ply] : 0;
+    }
+
+    // Returns the number of plies from the root that were visited
+    public int getPlies() {
+        return maxPly + 1;
+    }
+
+    // Returns the number of nodes where a move scored at least beta
+    public long getBetaCutoffs() {
+        return betaCutoffs;
+    }
+
+    // Returns the fraction of beta cutoffs caused by the first move tried
+    // This is how often the move ordering picked the right move, ideally close to 1
+    public double getFirstMoveCutoffRate() {
+        return betaCutoffs == 0 ? 0 : (double) firstMoveCutoffs / betaCutoffs;
+    }
+
+    // Returns the number of positions scored with the heuristic
+    public long getLeafEvaluations() {
+        return leafEvaluations;
+    }
+
+    // Returns the time spent in the heuristic
+    public long getHeuristicNanos() {
+        return heuristicNanos;
+    }
+
+    // Returns the time spent searching outside the heuristic
+    public long getTraversalNanos() {
+        return Math.max(0, elapsedNanos - heuristicNanos);
+    }
+
+    // Returns the wall-clock time of the search
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // Returns the number of nodes visited per second of wall-clock time
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    // Returns the branching factor b of a uniform tree of the completed depth with
+    // as many nodes as were visited, i.e. 1 + b + b^2 + ... + b^depth = nodes
+    // Lower is better: alpha-beta with perfect ordering gets close to the square
+    // root of the number of moves.
+    public double getEffectiveBranchingFactor() {
+        if (depth == 0 || nodes <= 1) return 0;
+        double low = 0, high = nodes;
+        for (int i = 0; i < 100; i++) {
+            double b = (low + high) / 2, total = 1, power = 1;
+            for (int d = 0; d < depth && total <= nodes; d++) {
+                power *= b;
+                total += power;
+            }
+            if (total > nodes) high = b;
+            else low = b;
+        }
+        return (low + high) / 2;
+    }
+
+    // Returns the statistics as a JSON object
+    public String toJson() {
+        var json = new StringBuilder();
+        json.append("{\"depth\":").append(depth);
+        json.append(",\"nodes\":").append(nodes);
+        json.append(",\"nodesPerPly\":[");
+        for (int ply = 0; ply <= maxPly; ply++) {
+            if (ply > 0) json.append(',');
+            json.append(nodesPerPly[ply]);
+        }
+        json.append("],\"betaCutoffs\":").append(betaCutoffs);
+        json.append(",\"firstMoveCutoffRate\":").append(getFirstMoveCutoffRate());
+        json.append(",\"leafEvaluations\":").append(leafEvaluations);
+        json.append(",\"heuristicNanos\":").append(heuristicNanos);
+        json.append(",\"traversalNanos\":").append(getTraversalNanos());
+        json.append(",\"elapsedNanos\":").append(elapsedNanos);
+        json.append(",\"effectiveBranchingFactor\":").append(getEffectiveBranchingFactor());
+        json.append(",\"nodesPerSecond\":").append(getNodesPerSecond());
+        return json.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d, %d nodes (%.0f/s), branching factor %.2f, %d cutoffs (%.0f%% first move), "
+                + "%d leaves, heuristic %.1f ms, traversal %.1f ms", depth, nodes, getNodesPerSecond(),
+                getEffectiveBranchingFactor(), betaCutoffs, 100 * getFirstMoveCutoffRate(), leafEvaluations,
+                heuristicNanos / 1e6, getTraversalNanos() / 1e6);
+    }
+}
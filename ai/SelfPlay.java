@@ -0,0 +1,243 @@
+package ai;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import game.*;
+
+// Plays two AIs against each other for many games without any input or output
+// but a summary, to check changes to their strength and speed
+//
+// The games are shared out between a pool of threads. AIs keep state between
+// moves, so each thread gets its own pair from the suppliers. The AIs swap
+// colours every game, and the first few moves of each game can be random so that
+// deterministic AIs do not play the same game every time. The random moves of
+// game i depend only on the seed and i, whatever the thread count, although AIs
+// that carry state from one game to the next may still answer them differently.
+//
+// Each game can be appended to a file of GameRecordWriter records as soon as it
+// ends. The label of a record is 0 if the first AI played white and 1 if the
+// second did, and its times are how long the AIs took for each move, with 0 for
+// the random moves.
+public class SelfPlay {
+    private final int size;
+    private final Supplier<AI> first;
+    private final Supplier<AI> second;
+    private final int threads;
+    private int randomMoves;
+    private long seed;
+
+    // The results of a run, counted from the first AI's point of view
+    public static final class Summary {
+        private final int games;
+        private final int firstWins;
+        private final int secondWins;
+        private final long moves;
+        private final long elapsedNanos;
+        private final LatencyHistogram latencies;
+
+        private Summary(int games, int firstWins, int secondWins, long moves, long elapsedNanos,
+                LatencyHistogram latencies) {
+            this.games = games;
+            this.firstWins = firstWins;
+            this.secondWins = secondWins;
+            this.moves = moves;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getFirstWins() {
+            return firstWins;
+        }
+
+        public int getSecondWins() {
+            return secondWins;
+        }
+
+        public int getDraws() {
+            return games - firstWins - secondWins;
+        }
+
+        // Returns the number of moves chosen by the AIs, not counting random ones
+        public long getMoves() {
+            return moves;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getGamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+        }
+
+        // Returns the time the AIs took for each move they chose
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games in %.1f s (%.1f games/s): first %d, second %d, draws %d%n"
+                    + "%d moves, latency %s", games, elapsedNanos / 1e9, getGamesPerSecond(), firstWins,
+                    secondWins, getDraws(), moves, latencies);
+        }
+    }
+
+    // size is the board size, first and second create the two AIs for each thread
+    public SelfPlay(int size, Supplier<AI> first, Supplier<AI> second, int threads) {
+        if (size < 1) throw new IllegalArgumentException("Board size must be at least 1");
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.size = size;
+        this.first = first;
+        this.second = second;
+        this.threads = threads;
+    }
+
+    // Makes the first moves of every game at random; there are none by default
+    public void setRandomMoves(int randomMoves) {
+        if (randomMoves < 0) throw new IllegalArgumentException("randomMoves must not be negative");
+        this.randomMoves = randomMoves;
+    }
+
+    // Sets the seed of the random moves
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Plays the given number of games and returns the results
+    public Summary run(int games) throws IOException {
+        return run(games, null);
+    }
+
+    // Plays the given number of games, appending each to the file (if not null)
+    // as it ends, and returns the results
+    public Summary run(int games, Path records) throws IOException {
+        if (games < 0) throw new IllegalArgumentException("games must not be negative");
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger firstWins = new AtomicInteger(), secondWins = new AtomicInteger();
+        AtomicLong moves = new AtomicLong();
+        LatencyHistogram latencies = new LatencyHistogram();
+        GameRecordWriter writer = records == null ? null : new GameRecordWriter(records);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(() -> {
+                    AI firstAI = first.get(), secondAI = second.get();
+                    int[] played = new int[size * size], micros = new int[size * size];
+                    for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                        PieceColour firstColour = (game & 1) == 0 ? PieceColour.WHITE : PieceColour.BLACK;
+                        Game finished = play(game, firstAI, secondAI, firstColour, played, micros, latencies);
+                        int count = 0;
+                        for (int cell = 0; cell < size * size; cell++)
+                            if (finished.getPiece(cell / size, cell % size) != PieceColour.NONE) count++;
+                        moves.addAndGet(Math.max(0, count - randomMoves));
+                        PieceColour winner = finished.winner();
+                        if (winner == firstColour) firstWins.incrementAndGet();
+                        else if (winner != PieceColour.NONE) secondWins.incrementAndGet();
+                        if (writer != null) {
+                            int label = firstColour == PieceColour.WHITE ? 0 : 1;
+                            synchronized (writer) {
+                                writer.write(size, winner, label, played, micros, count);
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : pool.invokeAll(tasks))
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException("A game failed", e.getCause());
+        } finally {
+            pool.shutdown();
+            if (writer != null) writer.close();
+        }
+        return new Summary(games, firstWins.get(), secondWins.get(), moves.get(), System.nanoTime() - start,
+                latencies);
+    }
+
+    // Plays one game and returns it, leaving the cells of its moves in order at
+    // the start of played and their times in microseconds at the start of micros
+    private Game play(int index, AI firstAI, AI secondAI, PieceColour firstColour, int[] played, int[] micros,
+            LatencyHistogram latencies) {
+        Game game = new GameImpl(size);
+        SplittableRandom random = new SplittableRandom(seed ^ index * 0x9E3779B97F4A7C15L);
+        int cells = size * size;
+        // The cells not played yet are kept after the played ones, for the random moves to pick from
+        for (int cell = 0; cell < cells; cell++)
+            played[cell] = cell;
+        int count = 0;
+        while (!game.isOver()) {
+            Move move;
+            if (count < randomMoves) {
+                int j = count + random.nextInt(cells - count);
+                int cell = played[j];
+                played[j] = played[count];
+                played[count] = cell;
+                move = new MoveImpl(cell / size, cell % size);
+                micros[count] = 0;
+            } else {
+                AI ai = game.currentPlayer() == firstColour ? firstAI : secondAI;
+                long start = System.nanoTime();
+                move = ai.getCurrentPlayerMove(game);
+                long nanos = System.nanoTime() - start;
+                latencies.record(nanos);
+                micros[count] = (int) Math.min(Integer.MAX_VALUE, nanos / 1000);
+                int cell = move.getRow() * size + move.getCol();
+                for (int j = count; j < cells; j++) {
+                    if (played[j] == cell) {
+                        played[j] = played[count];
+                        played[count] = cell;
+                        break;
+                    }
+                }
+            }
+            game.makeMove(move);
+            count++;
+        }
+        return game;
+    }
+
+    // Arguments: [games] [threads] [size] [file]
+    // By default 100 games on 5x5 on every core, without a file
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Path records = args.length > 3 ? Path.of(args[3]) : null;
+
+        // Change these to compare other AIs
+        Supplier<AI> first = () -> new Minimax(3, new MinPiecesHeuristic(), true);
+        Supplier<AI> second = () -> {
+            MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(1);
+            mcts.setIterations(2000);
+            return mcts;
+        };
+
+        SelfPlay selfPlay = new SelfPlay(size, first, second, threads);
+        // Minimax always plays the same game without a few random moves first
+        selfPlay.setRandomMoves(2);
+        System.out.println(selfPlay.run(games, records));
+    }
+}
@@ -0,0 +1,207 @@
+package ai;
+
+import java.util.Arrays;
+
+import game.*;
+
+// Finds the cells a player has to play in because of a threat
+// A player's distance is the least number of empty cells they would have to fill
+// to make a path, and their minimal paths are the paths needing that many. The
+// must-play cells against a player are the empty cells that lie on all of their
+// minimal paths, so that playing there makes them take a longer way. They are
+// found by working out the distance of each cell on some minimal path from both
+// ends, and then blocking each one in turn to see whether the distance grows.
+//
+// forcedMoves combines this into the moves worth searching: the player's own
+// winning moves if there are any, and otherwise the must-play cells against an
+// opponent who is close enough to a path. Against an opponent who can win with
+// their next move this loses nothing: any other move loses at once. Further out
+// it is forward pruning, which can miss a counter-threat.
+//
+// All buffers are reused between calls, so an instance is not safe to share
+// between threads.
+public class ThreatDetector {
+    private static final int INFINITY = PaddedBoard.INFINITY;
+
+    private PaddedBoard board;
+    // Copies of the board's fields, used on every step
+    private int size;
+    private int width;
+    private int[] pieces;
+    // Distances from the top, bottom, left and right edges
+    private int[][] fields;
+    private int[] deque;
+    private int[] mask;
+    private int generation;
+    private int lastDistance;
+
+    // Allocates the buffers for a board size
+    private void prepare(int size) {
+        if (board != null && board.size == size) return;
+        board = new PaddedBoard(size);
+        this.size = size;
+        width = board.width;
+        pieces = board.pieces;
+        fields = new int[4][board.cells];
+        deque = new int[Integer.highestOneBit(5 * board.cells) << 1];
+        mask = new int[size * size];
+        generation = 0;
+    }
+
+    private void load(Game game) {
+        prepare(game.getSize());
+        board.load(game);
+    }
+
+    // Fills dist with the player's distances from an edge (0 top, 1 bottom, 2 left, 3 right)
+    // with a 0-1 breadth-first search, where entering a cell costs what the cell costs
+    private void field(int player, int edge, int[] dist) {
+        Arrays.fill(dist, INFINITY);
+        int last = deque.length - 1, head = 0, tail = 0;
+        for (int i = 1; i <= size; i++) {
+            int cell = edgeCell(edge, i);
+            int cost = board.cost(player, cell);
+            if (cost < 0) continue;
+            dist[cell] = cost;
+            deque[tail] = cell;
+            tail = tail + 1 & last;
+        }
+        while (head != tail) {
+            int cell = deque[head];
+            head = head + 1 & last;
+            for (int offset : board.neighbours) {
+                int next = cell + offset, cost = board.cost(player, next);
+                if (cost < 0 || dist[cell] + cost >= dist[next]) continue;
+                dist[next] = dist[cell] + cost;
+                if (cost == 0) {
+                    head = head - 1 & last;
+                    deque[head] = next;
+                } else {
+                    deque[tail] = next;
+                    tail = tail + 1 & last;
+                }
+            }
+        }
+    }
+
+    // Returns the i-th cell (from 1) of an edge
+    private int edgeCell(int edge, int i) {
+        return switch (edge) {
+            case 0 -> width + i;
+            case 1 -> size * width + i;
+            case 2 -> i * width + 1;
+            default -> i * width + size;
+        };
+    }
+
+    // Returns the least distance in the field over the cells of an edge
+    private int reach(int[] dist, int edge) {
+        int best = INFINITY;
+        for (int i = 1; i <= size; i++)
+            best = Math.min(best, dist[edgeCell(edge, i)]);
+        return best;
+    }
+
+    // Returns the player's distance, having filled the four fields
+    private int distance(int player) {
+        for (int edge = 0; edge < 4; edge++)
+            field(player, edge, fields[edge]);
+        return Math.min(reach(fields[0], 1), reach(fields[2], 3));
+    }
+
+    // Returns the player's distance with only the fields from the top and left
+    private int distanceFromStart(int player) {
+        field(player, 0, fields[0]);
+        field(player, 2, fields[2]);
+        return Math.min(reach(fields[0], 1), reach(fields[2], 3));
+    }
+
+    // Writes the empty cells on some minimal path of the player into cells
+    // (as row * size + col) and returns how many there are
+    private int minimalPathCells(int player, int distance, int[] out) {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int cell = board.index(row, col);
+                if (pieces[cell] != 0) continue;
+                // The cell is counted in both fields, so a path through it needs one less
+                if (fields[0][cell] + fields[1][cell] - 1 == distance
+                        || fields[2][cell] + fields[3][cell] - 1 == distance)
+                    out[count++] = row * size + col;
+            }
+        }
+        return count;
+    }
+
+    // Returns the distance of the player found by the last call, or size * size
+    // if they could not make a path at all
+    public int getLastDistance() {
+        return lastDistance;
+    }
+
+    // Writes the empty cells that would complete a path for the player into cells
+    // (as row * size + col) and returns how many there are
+    public int winningCells(Game game, PieceColour player, int[] cells) {
+        load(game);
+        int distance = distance(player.ordinal());
+        lastDistance = Math.min(distance, size * size);
+        return distance == 1 ? minimalPathCells(player.ordinal(), 1, cells) : 0;
+    }
+
+    // Writes the empty cells on all of the player's minimal paths into cells (as
+    // row * size + col) and returns how many there are
+    public int mustPlay(Game game, PieceColour player, int[] cells) {
+        return mustPlay(game, player, INFINITY, cells);
+    }
+
+    // Like mustPlay, but only looks for the cells if the player is at most maxDistance from a path
+    private int mustPlay(Game game, PieceColour player, int maxDistance, int[] cells) {
+        load(game);
+        int owner = player.ordinal();
+        int distance = distance(owner);
+        lastDistance = Math.min(distance, size * size);
+        if (distance >= INFINITY || distance == 0 || distance > maxDistance) return 0;
+        int candidates = minimalPathCells(owner, distance, cells);
+        int count = 0;
+        for (int i = 0; i < candidates; i++) {
+            int cell = board.index(cells[i] / size, cells[i] % size);
+            pieces[cell] = 3 - owner;
+            if (distanceFromStart(owner) > distance) cells[count++] = cells[i];
+            pieces[cell] = 0;
+        }
+        return count;
+    }
+
+    // Writes the moves the player to move should restrict itself to into cells
+    // (as row * size + col) and returns how many there are, or 0 for no restriction
+    // These are the player's winning moves if there are any, or else, when the
+    // opponent is at most maxDistance from a path, the must-play cells against
+    // them. If there are none when the opponent can win next move, the game is
+    // lost, and their winning cells are returned.
+    public int forcedMoves(Game game, int maxDistance, int[] cells) {
+        if (game.isOver()) return 0;
+        PieceColour player = game.currentPlayer();
+        PieceColour opponent = player == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE;
+        int count = winningCells(game, player, cells);
+        if (count > 0) return count;
+        count = mustPlay(game, opponent, maxDistance, cells);
+        if (lastDistance > maxDistance) return 0;
+        if (count == 0 && lastDistance == 1) return winningCells(game, opponent, cells);
+        return count;
+    }
+
+    // Keeps only the moves among the first count entries of moves that are also
+    // among the first forced entries of cells, in their order, and returns how many are left
+    int restrict(int[] moves, int count, int[] cells, int forced) {
+        if (++generation == 0) {
+            Arrays.fill(mask, 0);
+            generation = 1;
+        }
+        for (int i = 0; i < forced; i++)
+            mask[cells[i]] = generation;
+        int kept = 0;
+        for (int i = 0; i < count; i++)
+            if (mask[moves[i]] == generation) moves[kept++] = moves[i];
+        return kept;
+    }
+}
@@ -0,0 +1,128 @@
+package ai;
+
+import java.util.Arrays;
+
+// A fixed-size transposition table for the Minimax search
+// Different move orders often reach the same position; the table remembers the
+// result of searching a position so that it is not searched again.
+//
+// Entries live in two parallel long arrays, so the table never grows and never
+// allocates after construction. Each entry packs:
+//   bits  0-31  score (always within an int, see Minimax.WIN)
+//   bits 32-47  best move as a cell index + 1 (0 for none)
+//   bits 48-55  remaining search depth
+//   bits 56-57  bound type (EXACT, LOWER or UPPER)
+//   bits 58-63  generation of the search that stored it
+// A data word of 0 marks an empty slot, which is why bounds start at 1.
+//
+// The key array holds key ^ data rather than the key itself. Several search
+// threads can then share one table without locks: if two threads write the
+// same slot at once and a reader sees the key of one entry with the data of
+// the other, the XOR no longer matches and the probe reports a miss.
+public class TranspositionTable {
+    // The stored score is the exact value of the position
+    public static final int EXACT = 1;
+    // The stored score is a lower bound (the search failed high)
+    public static final int LOWER = 2;
+    // The stored score is an upper bound (the search failed low)
+    public static final int UPPER = 3;
+
+    // Decides whether a new entry may overwrite the one already in its slot
+    public enum ReplacementPolicy {
+        // Always overwrite
+        ALWAYS,
+        // Keep entries from the current search that were searched deeper
+        DEPTH_PREFERRED
+    }
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private final ReplacementPolicy policy;
+    private int generation;
+
+    // Creates a table using about the given number of megabytes, keeping deeper entries
+    public TranspositionTable(int megabytes) {
+        this(megabytes, ReplacementPolicy.DEPTH_PREFERRED);
+    }
+
+    // Creates a table using about the given number of megabytes
+    // The number of entries is rounded down to a power of two, 16 bytes each
+    public TranspositionTable(int megabytes, ReplacementPolicy policy) {
+        if (megabytes < 1) throw new IllegalArgumentException("The table needs at least 1 megabyte");
+        if (policy == null) throw new IllegalArgumentException("A replacement policy is required");
+        long entries = Long.highestOneBit(((long) megabytes << 20) / 16);
+        entries = Math.min(entries, 1 << 30);
+        keys = new long[(int) entries];
+        data = new long[(int) entries];
+        mask = (int) entries - 1;
+        this.policy = policy;
+    }
+
+    // Returns the number of entries the table can hold
+    public int capacity() {
+        return keys.length;
+    }
+
+    // Starts a new search, so that older entries become preferred for replacement
+    public void newSearch() {
+        generation = (generation + 1) & 63;
+    }
+
+    // Removes every entry
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    // Returns the packed entry for the position, or 0 if it is not in the table
+    public long probe(long key) {
+        int slot = (int) key & mask;
+        long entry = data[slot];
+        return entry != 0 && (keys[slot] ^ entry) == key ? entry : 0;
+    }
+
+    // Stores the result of searching a position
+    // move is the cell index of the best move, or -1 if there is none
+    public void store(long key, int depth, int bound, long score, int move) {
+        int slot = (int) key & mask;
+        long old = data[slot];
+        boolean sameKey = old != 0 && (keys[slot] ^ old) == key;
+        if (policy == ReplacementPolicy.DEPTH_PREFERRED && old != 0 && !sameKey
+                && generation(old) == generation && depth(old) > depth)
+            return;
+        // Keep the old best move when the new search did not find one
+        if (move < 0 && sameKey) move = move(old);
+        long entry = (score & 0xFFFFFFFFL)
+                | ((long) (move + 1) & 0xFFFF) << 32
+                | ((long) Math.min(depth, 255)) << 48
+                | ((long) bound) << 56
+                | ((long) generation) << 58;
+        keys[slot] = key ^ entry;
+        data[slot] = entry;
+    }
+
+    // Decodes the score of an entry
+    public static long score(long entry) {
+        return (int) entry;
+    }
+
+    // Decodes the best move of an entry as a cell index, or -1 if there is none
+    public static int move(long entry) {
+        return (int) ((entry >>> 32) & 0xFFFF) - 1;
+    }
+
+    // Decodes the remaining search depth of an entry
+    public static int depth(long entry) {
+        return (int) ((entry >>> 48) & 0xFF);
+    }
+
+    // Decodes the bound type of an entry
+    public static int bound(long entry) {
+        return (int) ((entry >>> 56) & 3);
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 58);
+    }
+}
@@ -0,0 +1,112 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import game.*;
+
+// A heuristic that adds up other heuristics (its terms), each times a weight
+// Terms are scored in the order they were added, so the cheap ones should come
+// first. Each term has a bound on the size of its scores, and once the terms
+// scored so far put the total so far outside the search window that the rest
+// could not bring it back, the remaining terms are skipped and a bound is
+// returned instead (lazy evaluation).
+//
+// An optional EvaluationCache in front of the terms answers positions scored
+// before. Only full scores are stored, never the bounds of a lazy exit. Keep
+// the cache as long as the terms and weights stay the same, e.g. for every move
+// of a game.
+//
+// Terms that are IncrementalHeuristics are kept in step with the in-place
+// search's moves, even when the cache answers. An instance is not safe to share
+// between threads, and neither are most terms.
+public class WeightedHeuristic implements IncrementalHeuristic {
+    private final List<Heuristic> terms = new ArrayList<>();
+    private final List<IncrementalHeuristic> following = new ArrayList<>();
+    private int[] weights = new int[0];
+    // remaining[i] is the most the terms from i on can add to or take from the total
+    private long[] remaining = { 0 };
+    private EvaluationCache cache;
+    private long lazyExits;
+
+    // Adds a term, scored after the terms already added
+    // bound is the largest absolute score the term gives on the boards it will see,
+    // or Integer.MAX_VALUE if there is none, which stops lazy exits before it
+    public void add(Heuristic term, int weight, int bound) {
+        if (term == null) throw new IllegalArgumentException("A term is required");
+        if (bound < 0) throw new IllegalArgumentException("bound must not be negative");
+        terms.add(term);
+        if (term instanceof IncrementalHeuristic incremental) following.add(incremental);
+        weights = Arrays.copyOf(weights, terms.size());
+        weights[terms.size() - 1] = weight;
+        long[] extended = new long[terms.size() + 1];
+        long extra = bound == Integer.MAX_VALUE ? Long.MAX_VALUE / 4 : (long) Math.abs(weight) * bound;
+        for (int i = 0; i < terms.size(); i++)
+            extended[i] = Math.min(Long.MAX_VALUE / 4, remaining[i] + extra);
+        remaining = extended;
+    }
+
+    // Looks scores up in the cache first and stores new ones there, or stops caching if cache is null
+    public void setCache(EvaluationCache cache) {
+        this.cache = cache;
+    }
+
+    public EvaluationCache getCache() {
+        return cache;
+    }
+
+    // Returns the number of scores that skipped some of the terms
+    public long getLazyExits() {
+        return lazyExits;
+    }
+
+    @Override
+    public int score(Game game) {
+        return score(game, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public int score(Game game, long alpha, long beta) {
+        long key = 0;
+        if (cache != null) {
+            key = game.hashKey();
+            long cached = cache.probe(key);
+            if (cached != EvaluationCache.MISS) return (int) cached;
+        }
+        long total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (i > 0 && (total + remaining[i] <= alpha || total - remaining[i] >= beta)) {
+                lazyExits++;
+                return clamp(total + remaining[i] <= alpha ? total + remaining[i] : total - remaining[i]);
+            }
+            total += (long) weights[i] * terms.get(i).score(game);
+        }
+        int score = clamp(total);
+        if (cache != null) cache.store(key, score);
+        return score;
+    }
+
+    // Keeps the score clear of the win scores, see Minimax.WON
+    private static int clamp(long score) {
+        return (int) Math.max(-Minimax.WON + 1, Math.min(Minimax.WON - 1, score));
+    }
+
+    @Override
+    public void reset(Game game) {
+        for (IncrementalHeuristic term : following)
+            term.reset(game);
+    }
+
+    @Override
+    public void moveMade(Game game, Move move) {
+        for (IncrementalHeuristic term : following)
+            term.moveMade(game, move);
+    }
+
+    @Override
+    public void moveUndone(Game game, Move move) {
+        for (IncrementalHeuristic term : following)
+            term.moveUndone(game, move);
+    }
+}
@@ -0,0 +1,151 @@
+package ai.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class AsyncSearchTest extends Test {
+    public static void main(String[] args) throws Exception {
+        AsyncSearch service = new AsyncSearch(2, DistanceHeuristic::new);
+
+        // Every depth is published in order, and the last one is the result
+        Collector collector = new Collector();
+        Game game = new GameImpl(5);
+        AsyncSearch.Search search = service.submit(game, 300, collector);
+        Move move = search.result().get(5, TimeUnit.SECONDS);
+        expect(true, collector.done.await(5, TimeUnit.SECONDS));
+        expect(true, collector.updates.size() > 1);
+        boolean ordered = true;
+        for (int i = 0; i < collector.updates.size(); i++)
+            if (collector.updates.get(i).getDepth() != i + 1) ordered = false;
+        expect(true, ordered);
+        AsyncSearch.Update last = collector.updates.get(collector.updates.size() - 1);
+        expect(move, last.getMove());
+        expect(search.getCompletedDepth(), last.getDepth());
+        expect(move, last.getPrincipalVariation().get(0));
+        expect(PieceColour.NONE, game.getPiece(move.getRow(), move.getCol()));
+
+        // A forced win ends the search long before its budget
+        Grid grid = new GridImpl(5);
+        for (int row = 0; row < 4; row++)
+            grid.setPiece(row, 0, PieceColour.WHITE);
+        for (int col = 1; col < 4; col++)
+            grid.setPiece(4, col, PieceColour.BLACK);
+        grid.setPiece(2, 2, PieceColour.BLACK);
+        long start = System.nanoTime();
+        move = service.submit(new GameImpl(grid), 60_000).result().get(5, TimeUnit.SECONDS);
+        expect(4, move.getRow());
+        expect(0, move.getCol());
+        expect(true, System.nanoTime() - start < 5_000_000_000L);
+
+        // stop ends a long search with its best move so far, and cancelling abandons one
+        AsyncSearch.Search stopped = service.submit(new GameImpl(9), 60_000);
+        AsyncSearch.Search cancelled = service.submit(new GameImpl(9), 60_000);
+        while (stopped.getCompletedDepth() < 2 || cancelled.getCompletedDepth() < 1)
+            Thread.sleep(5);
+        stopped.stop();
+        cancelled.result().cancel(true);
+        expect(true, stopped.result().get(5, TimeUnit.SECONDS) != null);
+        boolean threw = false;
+        try {
+            cancelled.result().get();
+        } catch (CancellationException e) {
+            threw = true;
+        }
+        expect(true, threw);
+        waitForIdle(service);
+        expect(0, service.getRunningCount());
+
+        // More searches than threads all finish within about their own budgets,
+        // as they take turns in time slices
+        List<CompletableFuture<Move>> results = new ArrayList<>();
+        start = System.nanoTime();
+        results.add(service.submit(new GameImpl(9), 2_000).result());
+        for (int i = 0; i < 8; i++)
+            results.add(service.submit(new GameImpl(7), 100).result());
+        for (int i = 1; i < results.size(); i++)
+            results.get(i).get(5, TimeUnit.SECONDS);
+        expect(true, System.nanoTime() - start < 1_500_000_000L);
+        expect(true, results.get(0).get(10, TimeUnit.SECONDS) != null);
+
+        // On a single thread, a search with a long budget deep into a depth makes way
+        // for a short one instead of holding the thread until its deadline
+        AsyncSearch single = new AsyncSearch(1, DistanceHeuristic::new);
+        AsyncSearch.Search slow = single.submit(new GameImpl(9), 60_000);
+        // Depth 6 takes seconds here
+        while (slow.getCompletedDepth() < 5)
+            Thread.sleep(5);
+        start = System.nanoTime();
+        expect(true, single.submit(new GameImpl(7), 100).result().get(30, TimeUnit.SECONDS) != null);
+        expect(true, System.nanoTime() - start < 2_000_000_000L);
+        single.shutdown();
+        expect(true, slow.result().get(5, TimeUnit.SECONDS) != null);
+
+        // The deadline and stop apply to depth 1 too, which takes over a second on a
+        // large empty board, and the empty cell nearest the centre is played instead
+        start = System.nanoTime();
+        AsyncSearch.Search large = service.submit(new GameImpl(128), 10);
+        Move quick = large.result().get(5, TimeUnit.SECONDS);
+        expect(true, System.nanoTime() - start < 250_000_000L);
+        expect("0 (63,63)", large.getCompletedDepth() + " " + quick);
+        AsyncSearch.Search halted = service.submit(new GameImpl(128), 60_000);
+        start = System.nanoTime();
+        halted.stop();
+        expect(true, halted.result().get(5, TimeUnit.SECONDS) != null);
+        expect(true, System.nanoTime() - start < 250_000_000L);
+        expect(0, halted.getCompletedDepth());
+
+        // Nothing is accepted after shutdown, and running searches end with a move
+        AsyncSearch.Search running = service.submit(new GameImpl(9), 60_000);
+        service.shutdown();
+        expect(true, running.result().get(5, TimeUnit.SECONDS) != null);
+        boolean refused = false;
+        try {
+            service.submit(new GameImpl(3), 100);
+        } catch (IllegalStateException e) {
+            refused = true;
+        }
+        expect(true, refused);
+
+        checkAllTestsPassed();
+    }
+
+    private static void waitForIdle(AsyncSearch service) throws InterruptedException {
+        long end = System.nanoTime() + 5_000_000_000L;
+        while (service.getRunningCount() > 0 && System.nanoTime() < end)
+            Thread.sleep(5);
+    }
+
+    private static class Collector implements Flow.Subscriber<AsyncSearch.Update> {
+        final List<AsyncSearch.Update> updates = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public synchronized void onNext(AsyncSearch.Update update) {
+            updates.add(update);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ai.tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class BatchAnalysisTest extends Test {
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(25);
+        List<Grid> grids = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+            grids.add(Positions.randomPosition(5, random.nextInt(20), random).getGrid());
+
+        // Every position is scored once, with the score the heuristic gives on its own
+        BatchAnalysis analysis = new BatchAnalysis(4, DistanceHeuristic::new, 4);
+        List<BatchAnalysis.Result> results = Collections.synchronizedList(new ArrayList<>());
+        expect(300L, analysis.run(grids.iterator(), results::add));
+        expect(300, results.size());
+        boolean[] seen = new boolean[300];
+        int wrong = 0;
+        for (BatchAnalysis.Result result : results) {
+            int index = (int) result.getIndex();
+            if (seen[index]) wrong++;
+            seen[index] = true;
+            Game game = new GameImpl(grids.get(index));
+            long expected = game.isOver() ? 0 : new DistanceHeuristic().score(game);
+            if (result.getScore() != expected || result.getWinner() != game.winner()
+                    || result.getPlayer() != game.currentPlayer() || result.getMove() != null)
+                wrong++;
+        }
+        expect(0, wrong);
+
+        // With a search, every unfinished position gets a legal move, and a win in one is found
+        Grid grid = new GridImpl(5);
+        for (int row = 0; row < 4; row++)
+            grid.setPiece(row, 2, PieceColour.WHITE);
+        grid.setPiece(0, 3, PieceColour.BLACK);
+        grid.setPiece(0, 4, PieceColour.BLACK);
+        grid.setPiece(1, 4, PieceColour.BLACK);
+        grid.setPiece(4, 0, PieceColour.BLACK);
+        analysis.setSearchDepth(2);
+        results.clear();
+        List<Grid> searched = new ArrayList<>(grids.subList(0, 50));
+        searched.add(grid);
+        expect(51L, analysis.run(searched.iterator(), results::add));
+        wrong = 0;
+        for (BatchAnalysis.Result result : results) {
+            Game game = new GameImpl(searched.get((int) result.getIndex()));
+            Move move = result.getMove();
+            if (game.isOver() != (move == null)) wrong++;
+            if (move != null && game.getPiece(move.getRow(), move.getCol()) != PieceColour.NONE) wrong++;
+            if (result.getIndex() == 50) {
+                expect(4, move.getRow());
+                expect(2, move.getCol());
+                expect(Integer.MAX_VALUE - 1L, result.getScore());
+            }
+        }
+        expect(0, wrong);
+        analysis.setSearchDepth(0);
+
+        // A slow sink holds the reading back instead of letting positions pile up
+        AtomicLong read = new AtomicLong(), written = new AtomicLong(), ahead = new AtomicLong();
+        Iterator<Grid> counted = new Iterator<>() {
+            private final Iterator<Grid> source = grids.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public Grid next() {
+                ahead.accumulateAndGet(read.incrementAndGet() - written.get(), Math::max);
+                return source.next();
+            }
+        };
+        analysis.run(counted, result -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.incrementAndGet();
+        });
+        expect(300L, written.get());
+        // Each queue holds 4, each of the 4 workers 1, and the writer 1, plus the one being queued
+        expect(true, ahead.get() <= 4 + 4 + 4 + 1 + 1);
+
+        // A failing sink stops the analysis and its exception is thrown
+        boolean threw = false;
+        AtomicLong calls = new AtomicLong();
+        try {
+            analysis.run(grids.iterator(), result -> {
+                if (calls.incrementAndGet() == 10) throw new IOException("disk full");
+            });
+        } catch (IOException e) {
+            threw = e.getMessage().equals("disk full");
+        }
+        expect(true, threw);
+        expect(10L, calls.get());
+
+        // A supplier that fails stops the analysis rather than leaving it waiting for the worker
+        AtomicLong supplied = new AtomicLong();
+        BatchAnalysis failing = new BatchAnalysis(4, () -> {
+            if (supplied.incrementAndGet() == 3) throw new IllegalStateException("no heuristic");
+            return new DistanceHeuristic();
+        }, 4);
+        threw = false;
+        try {
+            failing.run(grids.iterator(), result -> { });
+        } catch (IllegalStateException e) {
+            threw = e.getMessage().equals("no heuristic");
+        }
+        expect(true, threw);
+        failing = new BatchAnalysis(2, DistanceHeuristic::new, 4);
+        failing.setAI(() -> {
+            throw new IllegalStateException("no AI");
+        });
+        threw = false;
+        try {
+            failing.run(grids.iterator(), result -> { });
+        } catch (IllegalStateException e) {
+            threw = e.getMessage().equals("no AI");
+        }
+        expect(true, threw);
+
+        // Every position of recorded games is analysed
+        Path file = Files.createTempFile("analysis", ".rec");
+        try {
+            int positions = 0;
+            try (GameRecordWriter writer = new GameRecordWriter(file)) {
+                for (int i = 0; i < 20; i++) {
+                    Game game = Positions.randomPosition(4, 16, random);
+                    int[] cells = new int[16];
+                    int count = 0;
+                    Game replay = new GameImpl(4);
+                    // Recover the order of the moves by replaying white and black pieces alternately
+                    List<Integer> white = new ArrayList<>(), black = new ArrayList<>();
+                    for (int cell = 0; cell < 16; cell++) {
+                        PieceColour piece = game.getPiece(cell / 4, cell % 4);
+                        if (piece == PieceColour.WHITE) white.add(cell);
+                        else if (piece == PieceColour.BLACK) black.add(cell);
+                    }
+                    while (!replay.isOver() && count < white.size() + black.size()) {
+                        List<Integer> side = replay.currentPlayer() == PieceColour.WHITE ? white : black;
+                        int cell = side.get(count / 2);
+                        replay.makeMove(new MoveImpl(cell / 4, cell % 4));
+                        cells[count++] = cell;
+                    }
+                    writer.write(4, replay.winner(), 0, cells, count);
+                    positions += count;
+                }
+            }
+            try (GameRecordReader reader = new GameRecordReader(file)) {
+                AtomicLong over = new AtomicLong();
+                expect((long) positions, analysis.run(BatchAnalysis.positions(reader), result -> {
+                    if (result.getWinner() != PieceColour.NONE) over.incrementAndGet();
+                }));
+                expect(true, over.get() > 0);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        checkAllTestsPassed();
+    }
+}
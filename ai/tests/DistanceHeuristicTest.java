@@ -0,0 +1,92 @@
+package ai.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class DistanceHeuristicTest extends Test {
+    public static void main(String[] args) {
+        DistanceHeuristic heuristic = new DistanceHeuristic();
+
+        // Both players need a full line on the empty board
+        Game game = new GameImpl(5);
+        expect(0, heuristic.score(game));
+        expect(5, heuristic.distance(game, PieceColour.WHITE));
+        game.makeMove(new MoveImpl(0, 2));
+        game.makeMove(new MoveImpl(1, 2));
+        game.makeMove(new MoveImpl(2, 0));
+        // White needs 4 for a row or column, black still 4 for its column
+        expect(4, heuristic.distance(game, PieceColour.WHITE));
+        expect(4, heuristic.distance(game, PieceColour.BLACK));
+        expect(0, heuristic.score(game));
+
+        // Followed through random moves and undos, the distances always match a
+        // search from scratch, and undoing every move restores the first position
+        Random random = new Random(19);
+        int mismatches = 0, positions = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            int size = 1 + random.nextInt(11);
+            game = new GameImpl(size);
+            heuristic.reset(game);
+            List<Move> order = new ArrayList<>(game.getMoves());
+            Collections.shuffle(order, random);
+            List<Move> made = new ArrayList<>();
+            for (Move move : order) {
+                if (game.isOver()) break;
+                game.makeMove(move);
+                heuristic.moveMade(game, move);
+                made.add(move);
+                // Now and then undo a few moves
+                if (random.nextInt(4) == 0) {
+                    for (int undo = random.nextInt(3); undo > 0 && !made.isEmpty(); undo--) {
+                        Move last = made.remove(made.size() - 1);
+                        game.undoMove(last);
+                        heuristic.moveUndone(game, last);
+                        if (!matches(heuristic, game)) mismatches++;
+                    }
+                }
+                positions++;
+                if (!matches(heuristic, game)) mismatches++;
+            }
+        }
+        System.out.println("Compared " + positions + " positions");
+        expect(0, mismatches);
+
+        // The in-place search finds the same moves and scores whether the
+        // heuristic follows its moves or works every leaf out afresh
+        DistanceHeuristic fresh = new DistanceHeuristic();
+        int different = 0;
+        for (int trial = 0; trial < 20; trial++) {
+            game = new GameImpl(6);
+            for (int i = random.nextInt(12); i > 0 && !game.isOver(); i--) {
+                List<Move> moves = new ArrayList<>(game.getMoves());
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            if (game.isOver()) continue;
+            Minimax following = new Minimax(3, new DistanceHeuristic(), true);
+            Minimax recomputing = new Minimax(3, position -> {
+                fresh.reset(position);
+                return fresh.score(position);
+            }, true);
+            Move a = following.getCurrentPlayerMove(game), b = recomputing.getCurrentPlayerMove(game);
+            if (a.getRow() != b.getRow() || a.getCol() != b.getCol()
+                    || following.getNodeCount() != recomputing.getNodeCount())
+                different++;
+        }
+        expect(0, different);
+
+        checkAllTestsPassed();
+    }
+
+    private static boolean matches(DistanceHeuristic heuristic, Game game) {
+        Grid grid = game.getGrid();
+        return heuristic.distance(game, PieceColour.WHITE) == Positions.distance(grid, PieceColour.WHITE)
+                && heuristic.distance(game, PieceColour.BLACK) == Positions.distance(grid, PieceColour.BLACK);
+    }
+}
@@ -0,0 +1,126 @@
+package ai.tests;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class GameServerTest extends Test {
+    private static final HttpClient http = HttpClient.newHttpClient();
+    private static String base;
+
+    public static void main(String[] args) throws Exception {
+        GameServer server = new GameServer(0, 4, 2, 60_000, DistanceHeuristic::new);
+        server.start();
+        base = "http://localhost:" + server.getPort() + "/games";
+        try {
+            // Create a game, play a move and have the AI answer it
+            HttpResponse<String> created = send("POST", "?size=4");
+            expect(201, created.statusCode());
+            String game = "/" + created.body();
+            expect(1, server.getSessionCount());
+            HttpResponse<String> played = send("POST", game + "/moves?row=1&col=1");
+            expect(200, played.statusCode());
+            expect(true, played.body().contains("player BLACK"));
+            expect(true, played.body().contains(".W.."));
+            HttpResponse<String> answer = send("POST", game + "/ai?millis=50");
+            expect(200, answer.statusCode());
+            String[] cell = answer.body().split(" ");
+            int row = Integer.parseInt(cell[0]), col = Integer.parseInt(cell[1]);
+            String state = send("GET", game).body();
+            expect('B', state.split("\n")[4 + row].charAt(col));
+            expect(true, state.contains("player WHITE"));
+
+            // Mistakes are reported rather than played
+            expect(400, send("POST", game + "/moves?row=1&col=1").statusCode());
+            expect(400, send("POST", game + "/moves?row=9&col=0").statusCode());
+            expect(400, send("POST", game + "/moves?row=x").statusCode());
+            expect(400, send("POST", game + "/ai?millis=0").statusCode());
+            expect(404, send("GET", "/12345").statusCode());
+            expect(404, send("POST", game + "/undo").statusCode());
+            expect(405, send("GET", "").statusCode());
+
+            // Boards are limited to a size whose first depth fits in an AI move's time
+            expect(400, send("POST", "?size=" + (GameServer.MAX_SIZE + 1)).statusCode());
+            String largest = "/" + send("POST", "?size=" + GameServer.MAX_SIZE).body();
+            expect(200, send("POST", largest + "/ai?millis=100").statusCode());
+            expect(200, send("DELETE", largest).statusCode());
+
+            // Queued AI moves for one game are searched one after another, and all played
+            List<CompletableFuture<HttpResponse<String>>> replies = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                replies.add(sendAsync("POST", game + "/ai?millis=30"));
+            for (CompletableFuture<HttpResponse<String>> reply : replies)
+                expect(200, reply.get().statusCode());
+            state = send("GET", game).body();
+            expect(true, state.contains("player BLACK"));
+
+            // Play the game out, after which no more moves are accepted
+            while (!send("GET", game).body().contains("over true"))
+                expect(200, send("POST", game + "/ai?millis=10").statusCode());
+            expect(409, send("POST", game + "/ai?millis=10").statusCode());
+            expect(409, send("POST", game + "/moves?row=0&col=0").statusCode());
+            expect(200, send("DELETE", game).statusCode());
+            expect(404, send("GET", game).statusCode());
+            expect(0, server.getSessionCount());
+
+            // The load generator plays games concurrently without errors
+            LoadGenerator.Report report = new LoadGenerator(URI.create(base), 8, 4, 5).run(16, 3);
+            expect(16, report.getGames());
+            expect(0L, report.getErrors());
+            expect(true, report.getAiLatencies().getCount() > 0);
+            expect(0, server.getSessionCount());
+        } finally {
+            server.stop();
+        }
+
+        // Unused sessions are evicted
+        server = new GameServer(0, 1, 1, 1_000, DistanceHeuristic::new);
+        server.start();
+        base = "http://localhost:" + server.getPort() + "/games";
+        try {
+            List<String> games = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+                games.add("/" + send("POST", "?size=3").body());
+            expect(5, server.getSessionCount());
+            long end = System.nanoTime() + 10_000_000_000L;
+            while (server.getSessionCount() > 0 && System.nanoTime() < end)
+                Thread.sleep(20);
+            expect(0, server.getSessionCount());
+            expect(5L, server.getEvicted());
+            // and then unknown to every request
+            int found = 0;
+            for (String evictedGame : games) {
+                if (send("GET", evictedGame).statusCode() != 404) found++;
+                if (send("POST", evictedGame + "/moves?row=0&col=0").statusCode() != 404) found++;
+                if (send("POST", evictedGame + "/ai?millis=10").statusCode() != 404) found++;
+                if (send("DELETE", evictedGame).statusCode() != 404) found++;
+            }
+            expect(0, found);
+        } finally {
+            server.stop();
+        }
+
+        checkAllTestsPassed();
+    }
+
+    private static HttpRequest request(String method, String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static HttpResponse<String> send(String method, String path) throws Exception {
+        return http.send(request(method, path), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static CompletableFuture<HttpResponse<String>> sendAsync(String method, String path) {
+        return http.sendAsync(request(method, path), HttpResponse.BodyHandlers.ofString());
+    }
+}
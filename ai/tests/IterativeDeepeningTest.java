@@ -0,0 +1,135 @@
+package ai.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class IterativeDeepeningTest extends Test {
+    public static void main(String[] args) {
+        Random random = new Random(5);
+
+        // On a fresh search, each iteration tries the previous iteration's best move first,
+        // including the iterations that need deeper buffers than any search before them.
+        // The heuristic runs the budget out just after iteration last + 1 makes its first
+        // root move, so the move returned is the best move of iteration last.
+        int notFirst = 0, checked = 0;
+        for (int trial = 0; trial < 10; trial++) {
+            Game game = new GameImpl(7);
+            for (int i = 4 + random.nextInt(10); i > 0 && !game.isOver(); i--) {
+                List<Move> moves = new ArrayList<>(game.getMoves());
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            if (game.isOver()) continue;
+            for (int last = 1; last <= 3; last++) {
+                FirstRootMove heuristic = new FirstRootMove(last + 1, 60);
+                IterativeDeepening deepening = new IterativeDeepening(50, heuristic);
+                Move best = deepening.getCurrentPlayerMove(game);
+                if (deepening.getCompletedDepth() != last || heuristic.first == null) continue;
+                checked++;
+                if (heuristic.first.getRow() != best.getRow() || heuristic.first.getCol() != best.getCol())
+                    notFirst++;
+            }
+        }
+        expect(true, checked > 20);
+        expect(0, notFirst);
+
+        // The deadline is kept, and the move and score are those of the last completed
+        // depth, which a fixed-depth search to that depth agrees with
+        int late = 0, differentScores = 0, badLines = 0;
+        for (int trial = 0; trial < 5; trial++) {
+            Game game = Positions.randomPosition(9, random.nextInt(20), random);
+            if (game.isOver()) continue;
+            IterativeDeepening deepening = new IterativeDeepening(100, new MinPiecesHeuristic());
+            long start = System.nanoTime();
+            Move move = deepening.getCurrentPlayerMove(game);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (millis > 150) late++;
+            int depth = deepening.getCompletedDepth();
+            Minimax fixed = new Minimax(depth, new MinPiecesHeuristic(), true);
+            fixed.getCurrentPlayerMove(game);
+            if (fixed.getLastScore() != deepening.getLastScore()) differentScores++;
+            List<Move> line = deepening.getPrincipalVariation();
+            if (line.isEmpty() || line.get(0) != move) badLines++;
+        }
+        expect(0, late);
+        expect(0, differentScores);
+        expect(0, badLines);
+
+        // Depth 1 keeps the deadline too, and without time for it the empty cell
+        // nearest the centre is played
+        IterativeDeepening hurried = new IterativeDeepening(10, new MinPiecesHeuristic());
+        long begin = System.nanoTime();
+        Move centre = hurried.getCurrentPlayerMove(new GameImpl(128));
+        expect(true, System.nanoTime() - begin < 250_000_000L);
+        expect("0 (63,63)", hurried.getCompletedDepth() + " " + centre);
+
+        // A forced result ends the search long before the budget runs out: white wins
+        // at once at (6, 0) or (6, 1), so depth 1 already scores a win
+        Grid grid = new GridImpl(7);
+        for (int row = 0; row < 6; row++) {
+            grid.setPiece(row, 0, PieceColour.WHITE);
+            grid.setPiece(row, 1, PieceColour.WHITE);
+            grid.setPiece(row, 3, PieceColour.BLACK);
+            grid.setPiece(row, 5, PieceColour.BLACK);
+        }
+        Game forced = new GameImpl(grid);
+        IterativeDeepening deepening = new IterativeDeepening(10_000, new MinPiecesHeuristic());
+        long start = System.nanoTime();
+        Move move = deepening.getCurrentPlayerMove(forced);
+        expect(true, System.nanoTime() - start < 1_000_000_000L);
+        expect(1, deepening.getCompletedDepth());
+        expect(true, deepening.getLastScore() > 0);
+        expect(true, move.getRow() == 6 && move.getCol() <= 1);
+
+        checkAllTestsPassed();
+    }
+
+    // Scores like MinPiecesHeuristic, and records the first move the given iteration
+    // makes at its root and then sleeps for sleepMillis
+    private static class FirstRootMove implements IncrementalHeuristic {
+        private final MinPiecesHeuristic pieces = new MinPiecesHeuristic();
+        private final int iteration;
+        private final long sleepMillis;
+        private int resets;
+        private boolean atRoot;
+        Move first;
+
+        FirstRootMove(int iteration, long sleepMillis) {
+            this.iteration = iteration;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public int score(Game game) {
+            return pieces.score(game);
+        }
+
+        @Override
+        public void reset(Game game) {
+            resets++;
+            atRoot = true;
+        }
+
+        @Override
+        public void moveMade(Game game, Move move) {
+            if (atRoot && resets == iteration) {
+                first = move;
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            atRoot = false;
+        }
+
+        @Override
+        public void moveUndone(Game game, Move move) {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ai.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import ai.Heuristic;
+import ai.MinPiecesHeuristic;
+import game.*;
+import game.tests.Test;
+
+public class MinPiecesHeuristicTest extends Test {
+    // The original Dijkstra implementation, kept as the reference the 0-1 BFS must match
+    private static class ReferenceHeuristic implements Heuristic {
+        private class Position {
+            int row, col, distance;
+
+            Position(int row, int col, int distance) {
+                this.row = row;
+                this.col = col;
+                this.distance = distance;
+            }
+        }
+
+        private int dijkstra(Grid grid, PieceColour piece, int startr, int startc, int endr, int endc) {
+            PriorityQueue<Position> queue = new PriorityQueue<>(new Comparator<Position>() {
+                @Override
+                public int compare(Position a, Position b) {
+                    return a.distance - b.distance;
+                }
+            });
+            boolean[][] visited = new boolean[grid.getSize()][grid.getSize()];
+            for (int i = 0; i < grid.getSize(); ++i) {
+                if (startr != -1)
+                    queue.offer(new Position(startr, i, grid.getPiece(startr, i) == piece ? 0 : 1));
+                if (startc != -1)
+                    queue.offer(new Position(i, startc, grid.getPiece(i, startc) == piece ? 0 : 1));
+            }
+            int[][] dirs = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+            while (!queue.isEmpty()) {
+                Position pos = queue.poll();
+                if (visited[pos.row][pos.col])
+                    continue;
+                visited[pos.row][pos.col] = true;
+                if (pos.row == endr || pos.col == endc)
+                    return pos.distance;
+                for (int d = 0; d < dirs.length; d++) {
+                    int row = pos.row + dirs[d][0];
+                    int col = pos.col + dirs[d][1];
+                    if (row < 0 || row >= grid.getSize() || col < 0 || col >= grid.getSize())
+                        continue;
+                    if (visited[row][col])
+                        continue;
+                    if (grid.getPiece(pos.row, pos.col) == piece) {
+                        queue.offer(new Position(row, col, pos.distance));
+                    } else if (grid.getPiece(pos.row, pos.col) == PieceColour.NONE) {
+                        queue.offer(new Position(row, col, pos.distance + 1));
+                    }
+                }
+            }
+            return grid.getSize() * grid.getSize();
+        }
+
+        @Override
+        public int score(Game game) {
+            var grid = game.getGrid();
+            var player = game.currentPlayer();
+            return -Math.min(dijkstra(grid, player, 0, -1, grid.getSize() - 1, -1),
+                    dijkstra(grid, player, -1, 0, -1, grid.getSize() - 1));
+        }
+    }
+
+    public static void main(String[] args) {
+        Heuristic fast = new MinPiecesHeuristic();
+        Heuristic reference = new ReferenceHeuristic();
+
+        Game game = new GameImpl(5);
+        expect(-5, fast.score(game));
+        game.makeMove(new MoveImpl(0, 2));
+        game.makeMove(new MoveImpl(2, 2));
+        // WHITE can complete the top row with four more pieces
+        expect(reference.score(game), fast.score(game));
+
+        // Positions from random games, on boards of different sizes in turn,
+        // so the buffers are also reallocated between calls
+        Random random = new Random(11);
+        int mismatches = 0, positions = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            int size = 1 + random.nextInt(12);
+            game = new GameImpl(size);
+            List<Move> order = new ArrayList<>(game.getMoves());
+            Collections.shuffle(order, random);
+            for (Move move : order) {
+                positions++;
+                if (fast.score(game) != reference.score(game))
+                    mismatches++;
+                if (game.isOver())
+                    break;
+                game.makeMove(move);
+            }
+        }
+
+        // Random boards, which need not be reachable in a real game, on both grids
+        // so that the word-at-a-time and the getPiece board loads are compared
+        for (int trial = 0; trial < 2000; trial++) {
+            int size = 1 + random.nextInt(12);
+            Grid grid = trial % 2 == 0 ? new GridImpl(size) : new BitboardGrid(size);
+            for (int row = 0; row < size; row++)
+                for (int col = 0; col < size; col++)
+                    grid.setPiece(row, col, PieceColour.values()[random.nextInt(3)]);
+            game = new GameImpl(grid);
+            positions++;
+            if (fast.score(game) != reference.score(game))
+                mismatches++;
+        }
+        System.out.println("Compared " + positions + " positions");
+        expect(0, mismatches);
+
+        checkAllTestsPassed();
+    }
+}
@@ -0,0 +1,60 @@
+package ai.tests;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class MonteCarloTreeSearchTest extends Test {
+    public static void main(String[] args) {
+        for (boolean rave : new boolean[] { false, true }) {
+            // WHITE completes the middle column with two more pieces
+            Game game = new GameImpl(5);
+            int[][] moves = { { 0, 2 }, { 0, 0 }, { 1, 2 }, { 4, 4 }, { 2, 2 }, { 3, 0 }, { 3, 2 } };
+            for (int[] move : moves)
+                game.makeMove(new MoveImpl(move[0], move[1]));
+            MonteCarloTreeSearch search = new MonteCarloTreeSearch(1);
+            search.setRave(rave);
+            search.setIterations(5000);
+            // BLACK has to block at once
+            expect("(4,2)", search.getCurrentPlayerMove(game).toString());
+            expect(5000L, search.getLastIterations());
+            game.makeMove(new MoveImpl(1, 1));
+            // Then WHITE wins in one
+            expect("(4,2)", search.getCurrentPlayerMove(game).toString());
+
+            // One thread with an iteration budget depends only on the seed
+            Game start = new GameImpl(7);
+            start.makeMove(new MoveImpl(3, 3));
+            MonteCarloTreeSearch first = new MonteCarloTreeSearch(42);
+            MonteCarloTreeSearch second = new MonteCarloTreeSearch(42);
+            first.setRave(rave);
+            second.setRave(rave);
+            first.setIterations(2000);
+            second.setIterations(2000);
+            expect(first.getCurrentPlayerMove(start).toString(), second.getCurrentPlayerMove(start).toString());
+
+            // Several threads share the iteration budget exactly
+            MonteCarloTreeSearch parallel = new MonteCarloTreeSearch(4, 1);
+            parallel.setRave(rave);
+            parallel.setIterations(3000);
+            Move move = parallel.getCurrentPlayerMove(start);
+            expect(3000L, parallel.getLastIterations());
+            expect(PieceColour.NONE, start.getPiece(move.getRow(), move.getCol()));
+            parallel.shutdown();
+        }
+
+        // A time budget on a large board
+        MonteCarloTreeSearch timed = new MonteCarloTreeSearch(2, 7);
+        timed.setIterations(0);
+        timed.setTimeBudget(200);
+        long start = System.nanoTime();
+        Move move = timed.getCurrentPlayerMove(new GameImpl(11));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        expect(true, millis < 400);
+        expect(true, timed.getLastIterations() > 0);
+        expect(true, move.getRow() >= 0 && move.getRow() < 11 && move.getCol() >= 0 && move.getCol() < 11);
+        timed.shutdown();
+
+        checkAllTestsPassed();
+    }
+}
@@ -0,0 +1,122 @@
+package ai.tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class MoveOrderingTest extends Test {
+    public static void main(String[] args) {
+        Random random = new Random(7);
+
+        // The default copy-mode search visits the same nodes and picks the same move every time
+        int differentMoves = 0, differentNodes = 0, trials = 0;
+        for (int trial = 0; trial < 10; trial++) {
+            Game game = Positions.randomPosition(5, random.nextInt(8), random);
+            if (game.isOver()) continue;
+            trials++;
+            Move[] moves = new Move[2];
+            long[] nodes = new long[2];
+            for (int run = 0; run < 2; run++) {
+                Minimax search = new Minimax(3, new MinPiecesHeuristic());
+                SearchStats stats = new SearchStats();
+                search.setStats(stats);
+                moves[run] = search.getCurrentPlayerMove(game);
+                nodes[run] = stats.getNodes();
+            }
+            if (moves[0].getRow() != moves[1].getRow() || moves[0].getCol() != moves[1].getCol()) differentMoves++;
+            if (nodes[0] != nodes[1]) differentNodes++;
+        }
+        expect(true, trials > 5);
+        expect(0, differentMoves);
+        expect(0, differentNodes);
+
+        // Without killers or history, cells near the centre come first, and then
+        // cells next to pieces; ties go to the highest cell without a seed
+        MoveOrdering ordering = new MoveOrdering();
+        ordering.prepare(5, 4);
+        int[] moves = new int[25];
+        Game game = new GameImpl(5);
+        expect(25, ordering.generate(game, 0, moves));
+        expect(12, moves[0]);
+        game.makeMove(new MoveImpl(2, 2));
+        expect(24, ordering.generate(game, 0, moves));
+        expect("17 13 11 7", moves[0] + " " + moves[1] + " " + moves[2] + " " + moves[3]);
+
+        // A cutoff makes the cell the first killer at its ply, pushing the old one
+        // second, and the other plies are left alone
+        ordering.recordCutoff(1, 0, PieceColour.BLACK, 1);
+        ordering.generate(game, 1, moves);
+        expect(0, moves[0]);
+        ordering.recordCutoff(1, 24, PieceColour.BLACK, 1);
+        ordering.generate(game, 1, moves);
+        expect("24 0", moves[0] + " " + moves[1]);
+        ordering.generate(game, 2, moves);
+        expect(17, moves[0]);
+
+        // Deep cutoffs raise a cell's history for that colour at every ply, and each
+        // new move halves the history and forgets the killers
+        ordering.recordCutoff(3, 4, PieceColour.BLACK, 4);
+        ordering.recordCutoff(3, 4, PieceColour.BLACK, 4);
+        ordering.generate(game, 2, moves);
+        expect(4, moves[0]);
+        game.makeMove(new MoveImpl(0, 0));
+        ordering.generate(game, 2, moves);
+        expect(true, moves[0] != 4);
+        game.undoMove(new MoveImpl(0, 0));
+        // 32 halved is 16, which still beats the 10 of the orthogonal neighbours, and 8 does not
+        ordering.newMove();
+        ordering.generate(game, 1, moves);
+        expect("4 17", moves[0] + " " + moves[1]);
+        ordering.newMove();
+        ordering.generate(game, 2, moves);
+        expect(17, moves[0]);
+
+        // A seed breaks the tie between the four neighbours the same way every time,
+        // and different seeds break it differently
+        boolean[] firsts = new boolean[25];
+        int unstable = 0;
+        for (long seed = 0; seed < 20; seed++) {
+            int[] first = new int[25], second = new int[25];
+            MoveOrdering a = new MoveOrdering(seed), b = new MoveOrdering(seed);
+            a.prepare(5, 1);
+            b.prepare(5, 1);
+            a.generate(game, 0, first);
+            b.generate(game, 0, second);
+            if (!Arrays.equals(first, second)) unstable++;
+            firsts[first[0]] = true;
+        }
+        expect(0, unstable);
+        expect("true true true true", firsts[7] + " " + firsts[11] + " " + firsts[13] + " " + firsts[17]);
+
+        // In the search, the same seed visits the same nodes, and the ordering,
+        // seeded or not, never changes the score
+        int differentScores = 0;
+        differentNodes = 0;
+        trials = 0;
+        for (int trial = 0; trial < 10; trial++) {
+            Game position = Positions.randomPosition(6, random.nextInt(12), random);
+            if (position.isOver()) continue;
+            trials++;
+            Minimax unseeded = new Minimax(4, new MinPiecesHeuristic(), true);
+            unseeded.getCurrentPlayerMove(position);
+            long[] nodes = new long[3];
+            for (int run = 0; run < 3; run++) {
+                Minimax seeded = new Minimax(4, new MinPiecesHeuristic(), true);
+                seeded.setSeed(run < 2 ? 11 : 12);
+                seeded.getCurrentPlayerMove(position);
+                nodes[run] = seeded.getNodeCount();
+                if (seeded.getLastScore() != unseeded.getLastScore()) differentScores++;
+            }
+            if (nodes[0] != nodes[1]) differentNodes++;
+        }
+        expect(true, trials > 5);
+        expect(0, differentNodes);
+        expect(0, differentScores);
+
+        checkAllTestsPassed();
+    }
+}
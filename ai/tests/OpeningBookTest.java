@@ -0,0 +1,99 @@
+package ai.tests;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class OpeningBookTest extends Test {
+    public static void main(String[] args) throws Exception {
+        // The 8 transforms are distinct, and inverse undoes each of them
+        int size = 5, wrong = 0;
+        for (int t = 0; t < Symmetry.COUNT; t++) {
+            if (Symmetry.transform(t, 1, size) == Symmetry.transform((t + 1) % 8, 1, size)) wrong++;
+            for (int cell = 0; cell < size * size; cell++)
+                if (Symmetry.transform(Symmetry.inverse(t), Symmetry.transform(t, cell, size), size) != cell)
+                    wrong++;
+        }
+        expect(0, wrong);
+
+        // Mirror images share a canonical hash
+        Game game = new GameImpl(size);
+        game.makeMove(new MoveImpl(0, 1));
+        game.makeMove(new MoveImpl(2, 3));
+        Game mirror = new GameImpl(size);
+        mirror.makeMove(new MoveImpl(1, 4));
+        mirror.makeMove(new MoveImpl(3, 2));
+        expect(Symmetry.canonicalHash(game), Symmetry.canonicalHash(mirror));
+        expect(false, Symmetry.canonicalHash(game) == game.hashKey() && Symmetry.canonicalHash(mirror) == mirror.hashKey());
+
+        Path file = Files.createTempFile("opening", ".book");
+        try {
+            OpeningBook.generate(4, 3, () -> OpeningBookTest::canonicalFirstEmpty, 2, file);
+            OpeningBook book = OpeningBook.open(file);
+            expect(4, book.getSize());
+            expect(3, book.getPlies());
+
+            // Every position of the first 3 plies is in the book, with the move the
+            // AI would have chosen there
+            Game empty = new GameImpl(4);
+            int missing = 0, illegal = 0, different = 0, positions = 0;
+            for (Move first : empty.getMoves()) {
+                Game one = empty.copy();
+                one.makeMove(first);
+                for (Move second : one.getMoves()) {
+                    Game two = one.copy();
+                    two.makeMove(second);
+                    for (Game position : new Game[] { empty, one, two }) {
+                        positions++;
+                        Move move = book.lookup(position);
+                        if (move == null) {
+                            missing++;
+                            continue;
+                        }
+                        if (position.getPiece(move.getRow(), move.getCol()) != PieceColour.NONE) {
+                            illegal++;
+                            continue;
+                        }
+                        Move expected = canonicalFirstEmpty(position);
+                        if (move.getRow() != expected.getRow() || move.getCol() != expected.getCol()) different++;
+                    }
+                }
+            }
+            System.out.println("Looked up " + positions + " positions");
+            expect(0, missing);
+            expect(0, illegal);
+            expect(0, different);
+
+            // Later positions fall back to the search
+            Game three = new GameImpl(4);
+            three.makeMove(new MoveImpl(0, 0));
+            three.makeMove(new MoveImpl(1, 1));
+            three.makeMove(new MoveImpl(2, 2));
+            expect(true, book.lookup(three) == null);
+            expect(true, book.lookup(new GameImpl(5)) == null);
+            BookAI ai = new BookAI(book, new Minimax(2, new MinPiecesHeuristic(), true));
+            ai.getCurrentPlayerMove(empty);
+            ai.getCurrentPlayerMove(three);
+            expect(1L, ai.getBookMoves());
+        } finally {
+            Files.delete(file);
+        }
+
+        checkAllTestsPassed();
+    }
+
+    // An AI whose move does not depend on how the board is turned: the first
+    // empty cell of the canonical form
+    private static Move canonicalFirstEmpty(Game game) {
+        int size = game.getSize();
+        int t = Symmetry.canonicalTransform(game);
+        for (int cell = 0;; cell++) {
+            int original = Symmetry.transform(Symmetry.inverse(t), cell, size);
+            if (game.getPiece(original / size, original % size) == PieceColour.NONE)
+                return new MoveImpl(original / size, original % size);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ai.tests;
+
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class ParallelSearchTest extends Test {
+    public static void main(String[] args) {
+        // Root splitting picks the move and score of the sequential in-place search
+        // with the same seed, on one thread or several, and Lazy SMP the same score
+        Random random = new Random(6);
+        int searched = 0, differentMoves = 0, differentScores = 0, differentLazyScores = 0;
+        for (int trial = 0; trial < 12; trial++) {
+            Game game = Positions.randomPosition(6, random.nextInt(14), random);
+            if (game.isOver()) continue;
+            searched++;
+            long seed = random.nextLong();
+            Minimax sequential = new Minimax(4, new MinPiecesHeuristic(), true);
+            sequential.setSeed(seed);
+            Move expected = sequential.getCurrentPlayerMove(game);
+            for (int threads : new int[] { 1, 4 }) {
+                ParallelSearch split = new ParallelSearch(ParallelSearch.Mode.ROOT_SPLIT, 4,
+                        MinPiecesHeuristic::new, threads, seed);
+                Move move = split.getCurrentPlayerMove(game);
+                split.shutdown();
+                if (move.getRow() != expected.getRow() || move.getCol() != expected.getCol()) differentMoves++;
+                if (split.getLastScore() != sequential.getLastScore()) differentScores++;
+
+                ParallelSearch lazy = new ParallelSearch(ParallelSearch.Mode.LAZY_SMP, 4,
+                        MinPiecesHeuristic::new, threads, seed);
+                lazy.getCurrentPlayerMove(game);
+                lazy.shutdown();
+                if (lazy.getLastScore() != sequential.getLastScore()) differentLazyScores++;
+            }
+        }
+        expect(true, searched > 8);
+        expect(0, differentMoves);
+        expect(0, differentScores);
+        expect(0, differentLazyScores);
+
+        // A win in one move is scored as the sequential search scores it, counted
+        // from the root: Integer.MAX_VALUE less one ply
+        Grid grid = new GridImpl(5);
+        for (int row = 0; row < 4; row++) {
+            grid.setPiece(row, 0, PieceColour.WHITE);
+            grid.setPiece(row, 2, PieceColour.BLACK);
+        }
+        Game game = new GameImpl(grid);
+        Minimax sequential = new Minimax(3, new MinPiecesHeuristic(), true);
+        Move win = sequential.getCurrentPlayerMove(game);
+        ParallelSearch split = new ParallelSearch(ParallelSearch.Mode.ROOT_SPLIT, 3, MinPiecesHeuristic::new, 2, 1);
+        Move move = split.getCurrentPlayerMove(game);
+        split.shutdown();
+        expect(Integer.MAX_VALUE - 1L, sequential.getLastScore());
+        expect(sequential.getLastScore(), split.getLastScore());
+        expect(win.getRow() + "," + win.getCol(), move.getRow() + "," + move.getCol());
+
+        checkAllTestsPassed();
+    }
+}
@@ -0,0 +1,76 @@
+package ai.tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class PerfectPlayTest extends Test {
+    public static void main(String[] args) throws Exception {
+        Path file = Files.createTempFile("perfect", ".db");
+        try {
+            // An interrupted build cannot be opened, and picks up where it stopped
+            expect(false, PerfectPlay.build(3, 2, file, 4));
+            boolean refused = false;
+            try {
+                PerfectPlay.open(file);
+            } catch (IOException e) {
+                refused = true;
+            }
+            expect(true, refused);
+            expect(true, PerfectPlay.build(3, 3, file, Integer.MAX_VALUE));
+            PerfectPlay database = PerfectPlay.open(file);
+
+            // The results and distances agree with a full search on random 3x3 positions
+            Random random = new Random(18);
+            int wrong = 0;
+            for (int i = 0; i < 300; i++) {
+                Game game = Positions.randomPosition(3, random.nextInt(7), random);
+                if (game.isOver()) continue;
+                int expected = Positions.solve(game);
+                ProofNumberSearch.Result want = expected > 0 ? ProofNumberSearch.Result.WIN
+                        : expected < 0 ? ProofNumberSearch.Result.LOSS : ProofNumberSearch.Result.DRAW;
+                int distance = expected == 0 ? Positions.emptyCells(game) : 100 - Math.abs(expected);
+                if (database.result(game) != want || database.distance(game) != distance) wrong++;
+            }
+            expect(0, wrong);
+
+            // The empty board is a win for white, and perfect play wins it as quickly as promised
+            Game game = new GameImpl(3);
+            expect(ProofNumberSearch.Result.WIN, database.result(game));
+            int distance = database.distance(game);
+            int moves = 0;
+            while (!game.isOver()) {
+                game.makeMove(database.getCurrentPlayerMove(game));
+                moves++;
+            }
+            expect(PieceColour.WHITE, game.winner());
+            expect(distance, moves);
+            expect(ProofNumberSearch.Result.LOSS, database.result(game));
+            expect(0, database.distance(game));
+
+            // Only the winning first moves keep white's win
+            Game empty = new GameImpl(3);
+            expect(true, database.keepsResult(empty, new MoveImpl(1, 1)));
+            expect(false, database.keepsResult(empty, new MoveImpl(0, 0)));
+
+            // A database of another size is not mistaken for this one
+            boolean rejected = false;
+            try {
+                PerfectPlay.build(2, 1, file);
+            } catch (IOException e) {
+                rejected = true;
+            }
+            expect(true, rejected);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        checkAllTestsPassed();
+    }
+}
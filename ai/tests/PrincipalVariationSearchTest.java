@@ -0,0 +1,82 @@
+package ai.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class PrincipalVariationSearchTest extends Test {
+    public static void main(String[] args) {
+        // White can win at once at (4, 0) or (4, 1), or later after almost any
+        // other move, since black can only block one of them
+        Grid grid = new GridImpl(5);
+        for (int row = 0; row < 4; row++) {
+            grid.setPiece(row, 0, PieceColour.WHITE);
+            grid.setPiece(row, 1, PieceColour.WHITE);
+        }
+        int[][] black = { { 0, 3 }, { 0, 4 }, { 2, 3 }, { 2, 4 }, { 4, 3 }, { 4, 4 }, { 1, 2 }, { 3, 2 } };
+        for (int[] cell : black)
+            grid.setPiece(cell[0], cell[1], PieceColour.BLACK);
+        Game game = new GameImpl(grid);
+
+        // Every kind of search takes the fastest win
+        int slow = 0;
+        for (int mode = 0; mode < 3; mode++) {
+            Minimax search = new Minimax(3, new DistanceHeuristic(), mode > 0);
+            search.setPrincipalVariationSearch(mode == 2);
+            search.setTranspositionTable(mode == 2 ? new TranspositionTable(1) : null);
+            Move move = search.getCurrentPlayerMove(game);
+            if (move.getRow() != 4 || move.getCol() > 1) slow++;
+        }
+        IterativeDeepening deepening = new IterativeDeepening(1000, new DistanceHeuristic(), new TranspositionTable(1));
+        deepening.setPrincipalVariationSearch(true);
+        deepening.setAspirationWindow(2);
+        Move move = deepening.getCurrentPlayerMove(game);
+        if (move.getRow() != 4 || move.getCol() > 1) slow++;
+        expect(0, slow);
+
+        // With a transposition table to make the second searches cheap, Principal
+        // Variation Search chooses the same moves as plain alpha-beta in fewer nodes, and its principal variation is a legal line
+        // starting with the chosen move
+        Random random = new Random(21);
+        int different = 0, badLines = 0;
+        long plainNodes = 0, pvsNodes = 0;
+        for (int trial = 0; trial < 20; trial++) {
+            game = new GameImpl(7);
+            for (int i = random.nextInt(15); i > 0 && !game.isOver(); i--) {
+                List<Move> moves = new ArrayList<>(game.getMoves());
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            if (game.isOver()) continue;
+            Minimax plain = new Minimax(4, new DistanceHeuristic(), true);
+            Minimax pvs = new Minimax(4, new DistanceHeuristic(), true);
+            pvs.setPrincipalVariationSearch(true);
+            plain.setTranspositionTable(new TranspositionTable(4));
+            pvs.setTranspositionTable(new TranspositionTable(4));
+            Move a = plain.getCurrentPlayerMove(game), b = pvs.getCurrentPlayerMove(game);
+            if (a.getRow() != b.getRow() || a.getCol() != b.getCol()) different++;
+            plainNodes += plain.getNodeCount();
+            pvsNodes += pvs.getNodeCount();
+
+            List<Move> line = pvs.getPrincipalVariation();
+            if (line.isEmpty() || line.get(0) != b) badLines++;
+            Game replay = game.copy();
+            for (Move step : line) {
+                if (replay.isOver() || replay.getPiece(step.getRow(), step.getCol()) != PieceColour.NONE) {
+                    badLines++;
+                    break;
+                }
+                replay.makeMove(step);
+            }
+        }
+        expect(0, different);
+        expect(0, badLines);
+        System.out.println("Nodes without and with PVS: " + plainNodes + " " + pvsNodes);
+        expect(true, pvsNodes < plainNodes);
+
+        checkAllTestsPassed();
+    }
+}
@@ -0,0 +1,99 @@
+package ai.tests;
+
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class ProofNumberSearchTest extends Test {
+    public static void main(String[] args) {
+        Random random = new Random(17);
+        ProofNumberSearch solver = new ProofNumberSearch(4, 10_000_000);
+
+        // The solver agrees with a full search on random 4x4 positions, and its
+        // move keeps the result
+        int positions = 0, wrong = 0, badMoves = 0;
+        int[] results = new int[3];
+        while (positions < 100) {
+            Game game = Positions.randomPosition(4, 7 + random.nextInt(4), random);
+            if (game.isOver()) continue;
+            positions++;
+            int expected = Integer.signum(Positions.solve(game));
+            ProofNumberSearch.Result result = solver.solve(game);
+            ProofNumberSearch.Result want = expected > 0 ? ProofNumberSearch.Result.WIN
+                    : expected < 0 ? ProofNumberSearch.Result.LOSS : ProofNumberSearch.Result.DRAW;
+            if (result != want) wrong++;
+            results[expected + 1]++;
+            if (result == ProofNumberSearch.Result.LOSS) {
+                if (solver.getBestMove() != null) badMoves++;
+            } else if (score(game, solver.getBestMove()) != expected) {
+                badMoves++;
+            }
+        }
+        System.out.println("Losses, draws and wins: " + results[0] + " " + results[1] + " " + results[2]);
+        expect(0, wrong);
+        expect(0, badMoves);
+
+        // A tiny budget gives up
+        solver.clear();
+        solver.setNodeBudget(1);
+        expect(ProofNumberSearch.Result.UNKNOWN, solver.solve(new GameImpl(4)));
+        expect(true, solver.getBestMove() == null);
+
+        // Minimax plays the solver's move once few cells are empty, and searches otherwise
+        solver.setNodeBudget(1_000_000);
+        Minimax minimax = new Minimax(1, new MinPiecesHeuristic(), true);
+        minimax.setEndgameSolver(solver, 9);
+        int suboptimal = 0;
+        for (int i = 0; i < 20; i++) {
+            Game game = Positions.randomPosition(4, 7 + random.nextInt(3), random);
+            if (game.isOver()) continue;
+            int expected = Integer.signum(Positions.solve(game));
+            if (score(game, minimax.getCurrentPlayerMove(game)) != expected) suboptimal++;
+        }
+        expect(0, suboptimal);
+        solver.setNodeBudget(1000);
+        solver.solve(new GameImpl(4));
+        long nodes = solver.getNodes();
+        minimax.getCurrentPlayerMove(new GameImpl(4));
+        expect(nodes, solver.getNodes());
+
+        // Without a call to setEndgameSolver, Minimax and IterativeDeepening solve positions
+        // with at most 10 empty cells, and setEndgameSolver(null, 0) turns that off
+        int defaultSuboptimal = 0, solved = 0;
+        for (int i = 0; i < 20; i++) {
+            Game game = Positions.randomPosition(4, 7 + random.nextInt(3), random);
+            if (game.isOver()) continue;
+            int expected = Integer.signum(Positions.solve(game));
+            Minimax plain = new Minimax(1, new MinPiecesHeuristic());
+            SearchStats stats = new SearchStats();
+            plain.setStats(stats);
+            if (score(game, plain.getCurrentPlayerMove(game)) != expected) defaultSuboptimal++;
+            if (stats.getDepth() == 0) solved++;
+            IterativeDeepening deepening = new IterativeDeepening(1000, new MinPiecesHeuristic());
+            if (score(game, deepening.getCurrentPlayerMove(game)) != expected) defaultSuboptimal++;
+        }
+        expect(0, defaultSuboptimal);
+        expect(true, solved > 0);
+        Minimax disabled = new Minimax(1, new MinPiecesHeuristic());
+        disabled.setEndgameSolver(null, 0);
+        SearchStats stats = new SearchStats();
+        disabled.setStats(stats);
+        Game nearlyFull = Positions.randomPosition(4, 8, random);
+        while (nearlyFull.isOver()) nearlyFull = Positions.randomPosition(4, 8, random);
+        disabled.getCurrentPlayerMove(nearlyFull);
+        expect(1, stats.getDepth());
+
+        checkAllTestsPassed();
+    }
+
+    // The result of a move for the player who makes it, with perfect play afterwards
+    private static int score(Game game, Move move) {
+        Game after = game.copy();
+        after.makeMove(move);
+        if (after.isOver()) return after.winner() == PieceColour.NONE ? 0 : 1;
+        return -Integer.signum(Positions.solve(after));
+    }
+}
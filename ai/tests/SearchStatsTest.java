@@ -0,0 +1,56 @@
+package ai.tests;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class SearchStatsTest extends Test {
+    public static void main(String[] args) {
+        // Both searches fill in the same counters
+        for (boolean inPlace : new boolean[] { false, true }) {
+            Game game = new GameImpl(5);
+            game.makeMove(new MoveImpl(2, 2));
+            Minimax minimax = new Minimax(3, new MinPiecesHeuristic(), inPlace);
+            SearchStats stats = new SearchStats();
+            minimax.setStats(stats);
+            minimax.getCurrentPlayerMove(game);
+
+            expect(3, stats.getDepth());
+            expect(4, stats.getPlies());
+            expect(1L, stats.getNodes(0));
+            // Every root move is searched
+            expect(24L, stats.getNodes(1));
+            long total = 0;
+            for (int ply = 0; ply < stats.getPlies(); ply++)
+                total += stats.getNodes(ply);
+            expect(stats.getNodes(), total);
+            if (inPlace) expect(minimax.getNodeCount(), stats.getNodes());
+            // Nothing wins within three moves, so every deepest node is a leaf
+            expect(stats.getNodes(3), stats.getLeafEvaluations());
+            expect(true, stats.getBetaCutoffs() > 0);
+            expect(true, stats.getFirstMoveCutoffRate() > 0 && stats.getFirstMoveCutoffRate() <= 1);
+            expect(true, stats.getHeuristicNanos() <= stats.getElapsedNanos());
+            double branching = stats.getEffectiveBranchingFactor();
+            expect(true, branching > 1 && branching < 24);
+            expect(true, stats.toJson().startsWith("{\"depth\":3,"));
+
+            // Each move starts the counts again
+            minimax.getCurrentPlayerMove(game);
+            expect(1L, stats.getNodes(0));
+
+            // Detached stats are left alone
+            minimax.setStats(null);
+            minimax.getCurrentPlayerMove(game);
+            expect(3, stats.getDepth());
+        }
+
+        // Iterative deepening reports the deepest completed iteration
+        IterativeDeepening deepening = new IterativeDeepening(100, new MinPiecesHeuristic());
+        SearchStats stats = new SearchStats();
+        deepening.setStats(stats);
+        deepening.getCurrentPlayerMove(new GameImpl(5));
+        expect(deepening.getCompletedDepth(), stats.getDepth());
+
+        checkAllTestsPassed();
+    }
+}
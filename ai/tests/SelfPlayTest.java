@@ -0,0 +1,82 @@
+package ai.tests;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class SelfPlayTest extends Test {
+    public static void main(String[] args) throws Exception {
+        // Percentiles are within a bucket of the true value
+        LatencyHistogram histogram = new LatencyHistogram();
+        expect(0L, histogram.getPercentile(0.5));
+        for (long nanos = 1; nanos <= 1000; nanos++)
+            histogram.record(nanos * 1000);
+        expect(1000L, histogram.getCount());
+        long median = histogram.getPercentile(0.5);
+        expect(true, median > 470_000 && median <= 500_000);
+        long max = histogram.getPercentile(1);
+        expect(true, max > 940_000 && max <= 1_000_000);
+        long min = histogram.getPercentile(0);
+        expect(true, min > 940 && min <= 1000);
+
+        // Both AIs are the same, so the games are decided by who moves first
+        Path file = Files.createTempFile("selfplay", ".bin");
+        try {
+            SelfPlay selfPlay = new SelfPlay(4, () -> new Minimax(2, new MinPiecesHeuristic(), true),
+                    () -> new Minimax(2, new MinPiecesHeuristic(), true), 3);
+            selfPlay.setRandomMoves(3);
+            selfPlay.setSeed(7);
+            SelfPlay.Summary summary = selfPlay.run(20, file);
+            expect(20, summary.getGames());
+            expect(20, summary.getFirstWins() + summary.getSecondWins() + summary.getDraws());
+            expect(summary.getMoves(), summary.getLatencies().getCount());
+            expect(true, summary.getGamesPerSecond() > 0);
+
+            // Every record replays to the winner it gives, and has the times of the
+            // moves, 0 for the random ones and the summary's latencies for the others
+            int games = 0, wrong = 0, wrongTimes = 0;
+            long aiMoves = 0, maxMicros = 0;
+            try (GameRecordReader reader = new GameRecordReader(file)) {
+                while (reader.next()) {
+                    Game game = reader.toGame();
+                    if (reader.getSize() != 4 || !game.isOver() || game.winner() != reader.getWinner()) wrong++;
+                    aiMoves += Math.max(0, reader.getMoveCount() - 3);
+                    if (!reader.hasTimes()) {
+                        wrongTimes++;
+                    } else {
+                        for (int i = 0; i < Math.min(3, reader.getMoveCount()); i++)
+                            if (reader.getMicros(i) != 0) wrongTimes++;
+                        for (int i = 3; i < reader.getMoveCount(); i++)
+                            maxMicros = Math.max(maxMicros, reader.getMicros(i));
+                    }
+                    games++;
+                }
+            }
+            expect(20, games);
+            expect(0, wrong);
+            expect(summary.getMoves(), aiMoves);
+            expect(0, wrongTimes);
+            // The slowest move falls in the histogram's last bucket, which is within a sixteenth of it
+            long slowest = summary.getLatencies().getPercentile(1);
+            expect(true, maxMicros * 1000 + 999 >= slowest && maxMicros * 1000 < slowest + slowest / 16 + 1);
+
+            // With one thread the games depend only on the seed
+            long[] moves = new long[2];
+            for (int run = 0; run < 2; run++) {
+                SelfPlay oneThread = new SelfPlay(4, () -> new Minimax(2, new MinPiecesHeuristic(), true),
+                        () -> new Minimax(2, new MinPiecesHeuristic(), true), 1);
+                oneThread.setRandomMoves(3);
+                oneThread.setSeed(7);
+                moves[run] = oneThread.run(20).getMoves();
+            }
+            expect(moves[0], moves[1]);
+        } finally {
+            Files.delete(file);
+        }
+
+        checkAllTestsPassed();
+    }
+}
@@ -0,0 +1,25 @@
+package ai.tests;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class SymmetryPruningTest extends Test {
+    public static void main(String[] args) {
+        // With symmetry pruning only one move of each kind is searched at the root:
+        // the centre piece leaves 5 kinds of cell rather than 24 cells
+        for (boolean inPlace : new boolean[] { false, true }) {
+            Game game = new GameImpl(5);
+            game.makeMove(new MoveImpl(2, 2));
+            Minimax minimax = new Minimax(2, new MinPiecesHeuristic(), inPlace);
+            minimax.setSymmetryPruning(true);
+            SearchStats stats = new SearchStats();
+            minimax.setStats(stats);
+            Move move = minimax.getCurrentPlayerMove(game);
+            expect(5L, stats.getNodes(1));
+            expect(PieceColour.NONE, game.getPiece(move.getRow(), move.getCol()));
+        }
+
+        checkAllTestsPassed();
+    }
+}
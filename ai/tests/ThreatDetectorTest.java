@@ -0,0 +1,102 @@
+package ai.tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class ThreatDetectorTest extends Test {
+    public static void main(String[] args) {
+        ThreatDetector threats = new ThreatDetector();
+        Random random = new Random(22);
+
+        // On random boards the must-play cells are exactly the empty cells whose
+        // blocking makes the player's path longer, and the winning cells those
+        // that complete a path
+        int wrongMustPlay = 0, wrongWinning = 0, wrongDistance = 0, boards = 0;
+        while (boards < 500) {
+            int size = 2 + random.nextInt(6);
+            Grid grid = new GridImpl(size);
+            for (int cell = 0; cell < size * size; cell++)
+                if (random.nextInt(3) > 0)
+                    grid.setPiece(cell / size, cell % size, random.nextBoolean() ? PieceColour.WHITE : PieceColour.BLACK);
+            Game game = new GameImpl(grid);
+            if (game.isOver()) continue;
+            boards++;
+            for (PieceColour player : new PieceColour[] { PieceColour.WHITE, PieceColour.BLACK }) {
+                PieceColour other = player == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE;
+                int distance = Positions.distance(grid, player);
+                boolean[] mustPlay = new boolean[size * size], winning = new boolean[size * size];
+                for (int cell = 0; cell < size * size; cell++) {
+                    if (grid.getPiece(cell / size, cell % size) != PieceColour.NONE) continue;
+                    Grid blocked = grid.copy();
+                    blocked.setPiece(cell / size, cell % size, other);
+                    mustPlay[cell] = distance < size * size && Positions.distance(blocked, player) > distance;
+                    Grid filled = grid.copy();
+                    filled.setPiece(cell / size, cell % size, player);
+                    winning[cell] = Positions.distance(filled, player) == 0;
+                }
+                int[] cells = new int[size * size];
+                int count = threats.mustPlay(game, player, cells);
+                if (threats.getLastDistance() != distance) wrongDistance++;
+                if (!Arrays.equals(mustPlay, marked(cells, count, size))) wrongMustPlay++;
+                count = threats.winningCells(game, player, cells);
+                if (!Arrays.equals(winning, marked(cells, count, size))) wrongWinning++;
+            }
+        }
+        expect(0, wrongDistance);
+        expect(0, wrongMustPlay);
+        expect(0, wrongWinning);
+
+        // White threatens to finish the left column, so black's only move is (4, 0)
+        Grid grid = new GridImpl(5);
+        for (int row = 0; row < 4; row++)
+            grid.setPiece(row, 0, PieceColour.WHITE);
+        grid.setPiece(1, 2, PieceColour.BLACK);
+        grid.setPiece(2, 3, PieceColour.BLACK);
+        grid.setPiece(3, 3, PieceColour.BLACK);
+        Game game = new GameImpl(grid);
+        int[] cells = new int[25];
+        expect(1, threats.forcedMoves(game, 1, cells));
+        expect(20, cells[0]);
+
+        Minimax plain = new Minimax(3, new DistanceHeuristic(), true);
+        Minimax pruned = new Minimax(3, new DistanceHeuristic(), true);
+        pruned.setThreatPruning(1);
+        Move expected = plain.getCurrentPlayerMove(game), move = pruned.getCurrentPlayerMove(game);
+        expect(4, move.getRow());
+        expect(0, move.getCol());
+        expect(expected.getRow() * 5 + expected.getCol(), move.getRow() * 5 + move.getCol());
+        expect(true, pruned.getForcedNodes() > 0);
+        expect(true, pruned.getNodeCount() < plain.getNodeCount());
+
+        // A player who can win does so, and further out the must-play cells are
+        // only used when asked for
+        game.makeMove(new MoveImpl(4, 4));
+        expect(1, threats.forcedMoves(game, 1, cells));
+        expect(20, cells[0]);
+        grid = new GridImpl(5);
+        for (int row = 0; row < 3; row++)
+            grid.setPiece(row, 0, PieceColour.WHITE);
+        grid.setPiece(3, 1, PieceColour.BLACK);
+        grid.setPiece(0, 4, PieceColour.BLACK);
+        game = new GameImpl(grid);
+        expect(0, threats.forcedMoves(game, 1, cells));
+        expect(2, threats.forcedMoves(game, 2, cells));
+        expect(15, cells[0]);
+        expect(20, cells[1]);
+        expect(0, threats.forcedMoves(new GameImpl(5), 5, cells));
+
+        checkAllTestsPassed();
+    }
+
+    private static boolean[] marked(int[] cells, int count, int size) {
+        boolean[] marks = new boolean[size * size];
+        for (int i = 0; i < count; i++)
+            marks[cells[i]] = true;
+        return marks;
+    }
+}
@@ -0,0 +1,106 @@
+package ai.tests;
+
+import java.util.Random;
+
+import ai.*;
+import game.*;
+import game.tests.Positions;
+import game.tests.Test;
+
+public class TranspositionTableTest extends Test {
+    public static void main(String[] args) {
+        // Every field of an entry reads back as stored, for each bound, the extreme
+        // win and loss scores (Minimax.WIN is Integer.MAX_VALUE and WON is 2^16 less),
+        // depths past a byte and the largest cell of a 255x255 board
+        TranspositionTable table = new TranspositionTable(1);
+        long win = Integer.MAX_VALUE, won = win - (1 << 16);
+        long[] scores = { 0, 1, -1, 123_456, -123_456, won, -won, won + 7, -won - 7, win, -win };
+        int[] bounds = { TranspositionTable.EXACT, TranspositionTable.LOWER, TranspositionTable.UPPER };
+        int[] depths = { 0, 1, 17, 255, 1000 };
+        int[] moves = { -1, 0, 42, 255 * 255 - 1 };
+        int wrong = 0;
+        long key = 1;
+        for (long score : scores) {
+            for (int bound : bounds) {
+                for (int depth : depths) {
+                    for (int move : moves) {
+                        key = key * 6364136223846793005L + 1442695040888963407L;
+                        table.store(key, depth, bound, score, move);
+                        long entry = table.probe(key);
+                        if (entry == 0 || TranspositionTable.score(entry) != score
+                                || TranspositionTable.bound(entry) != bound
+                                || TranspositionTable.depth(entry) != Math.min(depth, 255)
+                                || TranspositionTable.move(entry) != move)
+                            wrong++;
+                    }
+                }
+            }
+        }
+        expect(0, wrong);
+
+        // A key that shares a slot with a stored one misses
+        int slots = table.capacity();
+        table.clear();
+        table.store(5, 3, TranspositionTable.EXACT, 10, 1);
+        expect(0L, table.probe(5 + slots));
+        expect(true, table.probe(5) != 0);
+
+        // Storing again without a move keeps the old best move
+        table.store(5, 4, TranspositionTable.LOWER, 11, -1);
+        expect(1, TranspositionTable.move(table.probe(5)));
+        expect(4, TranspositionTable.depth(table.probe(5)));
+
+        // Depth-preferred replacement keeps a deeper entry of the current search,
+        // but gives way to a deeper one, and to anything once a new search starts
+        table.clear();
+        table.store(5, 6, TranspositionTable.EXACT, 10, 1);
+        table.store(5 + slots, 3, TranspositionTable.EXACT, 20, 2);
+        expect(0L, table.probe(5 + slots));
+        expect(6, TranspositionTable.depth(table.probe(5)));
+        table.store(5 + slots, 8, TranspositionTable.EXACT, 20, 2);
+        expect(0L, table.probe(5));
+        expect(8, TranspositionTable.depth(table.probe(5 + slots)));
+        table.newSearch();
+        table.store(5, 1, TranspositionTable.UPPER, 30, 3);
+        expect(0L, table.probe(5 + slots));
+        expect(30L, TranspositionTable.score(table.probe(5)));
+
+        // Always-replace overwrites whatever is there
+        TranspositionTable always = new TranspositionTable(1, TranspositionTable.ReplacementPolicy.ALWAYS);
+        always.store(5, 9, TranspositionTable.EXACT, 10, 1);
+        always.store(5 + slots, 1, TranspositionTable.EXACT, 20, 2);
+        expect(0L, always.probe(5));
+        expect(20L, TranspositionTable.score(always.probe(5 + slots)));
+
+        // Cleared tables are empty
+        always.clear();
+        expect(0L, always.probe(5 + slots));
+
+        // A search with a table scores every position as one without, and so does
+        // searching again with the table kept, which then finds entries for most nodes
+        // (A table kept across different positions may score a node from a deeper search.)
+        Random random = new Random(4);
+        int different = 0, searched = 0, mostlyHits = 0;
+        for (int trial = 0; trial < 20; trial++) {
+            Game game = Positions.randomPosition(6, random.nextInt(12), random);
+            if (game.isOver()) continue;
+            searched++;
+            Minimax plain = new Minimax(4, new MinPiecesHeuristic(), true);
+            Minimax cached = new Minimax(4, new MinPiecesHeuristic(), true);
+            cached.setTranspositionTable(new TranspositionTable(4));
+            plain.getCurrentPlayerMove(game);
+            cached.getCurrentPlayerMove(game);
+            if (plain.getLastScore() != cached.getLastScore()) different++;
+            expect(0L, plain.getTableHits() + plain.getTableMisses());
+            expect(true, cached.getTableMisses() > 0);
+            cached.getCurrentPlayerMove(game);
+            if (plain.getLastScore() != cached.getLastScore()) different++;
+            if (cached.getTableHits() > cached.getTableMisses()) mostlyHits++;
+        }
+        expect(true, searched > 10);
+        expect(0, different);
+        expect(searched, mostlyHits);
+
+        checkAllTestsPassed();
+    }
+}
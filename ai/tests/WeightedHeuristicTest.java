@@ -0,0 +1,109 @@
+package ai.tests;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import ai.*;
+import game.*;
+import game.tests.Test;
+
+public class WeightedHeuristicTest extends Test {
+    public static void main(String[] args) {
+        Random random = new Random(20);
+        List<Game> positions = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        while (positions.size() < 200) {
+            Game game = new GameImpl(7);
+            for (int i = random.nextInt(20); i > 0 && !game.isOver(); i--) {
+                List<Move> moves = new ArrayList<>(game.getMoves());
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            if (!game.isOver() && seen.add(game.hashKey())) positions.add(game);
+        }
+
+        // The total is the weighted sum of the terms
+        DistanceHeuristic distance = new DistanceHeuristic();
+        MinPiecesHeuristic minPieces = new MinPiecesHeuristic();
+        WeightedHeuristic weighted = new WeightedHeuristic();
+        weighted.add(new DistanceHeuristic(), 3, 49);
+        weighted.add(new MinPiecesHeuristic(), 2, 49);
+        int wrong = 0;
+        for (Game game : positions)
+            if (weighted.score(game) != 3 * distance.score(game) + 2 * minPieces.score(game)) wrong++;
+        expect(0, wrong);
+
+        // With a window, a lazy exit still lands on the right side of it
+        int lazyWrong = 0;
+        for (Game game : positions) {
+            int exact = weighted.score(game);
+            long alpha = exact + random.nextInt(601) - 300, beta = alpha + 1 + random.nextInt(10);
+            int lazy = weighted.score(game, alpha, beta);
+            if (exact <= alpha ? lazy > alpha : exact >= beta ? lazy < beta : lazy != exact) lazyWrong++;
+        }
+        expect(0, lazyWrong);
+        expect(true, weighted.getLazyExits() > 0);
+
+        // The cache answers positions seen before with the same score
+        EvaluationCache cache = new EvaluationCache(1);
+        weighted.setCache(cache);
+        wrong = 0;
+        for (int pass = 0; pass < 2; pass++)
+            for (Game game : positions)
+                if (weighted.score(game) != 3 * distance.score(game) + 2 * minPieces.score(game)) wrong++;
+        expect(0, wrong);
+        expect(200L, cache.getMisses());
+        expect(200L, cache.getHits());
+        expect(0.5, cache.getHitRate());
+
+        // A full cache evicts but never returns another key's score
+        EvaluationCache small = new EvaluationCache(1);
+        wrong = 0;
+        for (int i = 0; i < 4 * small.capacity(); i++) {
+            long key = random.nextLong();
+            small.store(key, (int) key);
+            long probed = small.probe(random.nextBoolean() ? key : random.nextLong());
+            if (probed != EvaluationCache.MISS && probed != (int) key) wrong++;
+        }
+        expect(0, wrong);
+        expect(true, small.getEvictions() > 0);
+
+        // An entry that keeps being read survives the stores that evict the others
+        // of its bucket, which are only stored once
+        small.clear();
+        small.store(0, 7);
+        int buckets = small.capacity() / 4, lost = 0;
+        for (int i = 1; i <= 12; i++) {
+            small.store((long) i * buckets, i);
+            if (small.probe(0) != 7) lost++;
+        }
+        expect(0, lost);
+        expect(EvaluationCache.MISS, small.probe(buckets));
+
+        // Minimax finds the same moves with the same effort whether or not leaves can stop
+        // early, and the cache answers some of the leaves of the second search
+        int different = 0;
+        for (int i = 0; i < 10; i++) {
+            Game game = positions.get(i);
+            WeightedHeuristic plain = new WeightedHeuristic();
+            plain.add(new DistanceHeuristic(), 3, 49);
+            plain.add(new MinPiecesHeuristic(), 2, 49);
+            Minimax full = new Minimax(3, position -> plain.score(position), true);
+            WeightedHeuristic lazy = new WeightedHeuristic();
+            lazy.add(new DistanceHeuristic(), 3, 49);
+            lazy.add(new MinPiecesHeuristic(), 2, 49);
+            lazy.setCache(new EvaluationCache(1));
+            Minimax search = new Minimax(3, lazy, true);
+            Move a = full.getCurrentPlayerMove(game), b = search.getCurrentPlayerMove(game);
+            if (a.getRow() != b.getRow() || a.getCol() != b.getCol() || full.getNodeCount() != search.getNodeCount())
+                different++;
+            search.getCurrentPlayerMove(game);
+            if (lazy.getCache().getHits() == 0) different++;
+        }
+        expect(0, different);
+
+        checkAllTestsPassed();
+    }
+}
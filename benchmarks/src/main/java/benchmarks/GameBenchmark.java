@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import game.*;
+
+// Plays whole games of random moves, calling isOver after every move as the
+// game loop in PlayVsAI does. The score is the time per game, so dividing by
+// the number of moves gives the cost of one makeMove + isOver.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+    private static final int GAMES = 64;
+
+    @Param({ "5", "9", "15" })
+    public int size;
+
+    // true for the incremental union-find win check, false for PathFinder after every move
+    @Param({ "true", "false" })
+    public boolean unionFind;
+
+    private List<List<Move>> games;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        games = new ArrayList<>();
+        for (int i = 0; i < GAMES; i++)
+            games.add(Positions.shuffledMoves(size, random));
+    }
+
+    @Benchmark
+    public PieceColour makeMoveAndIsOver() {
+        List<Move> moves = games.get(next++ % GAMES);
+        Game game = new GameImpl(size, unionFind);
+        for (Move move : moves) {
+            game.makeMove(move);
+            if (game.isOver()) break;
+        }
+        return game.winner();
+    }
+}
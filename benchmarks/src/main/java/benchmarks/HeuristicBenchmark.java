@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import ai.*;
+import game.*;
+
+// Scores positions from random games with a third of the board filled
+// minPiecesScore runs the 0-1 BFS or the original Dijkstra, chosen by minPieces
+// distanceScore rebuilds DistanceHeuristic's fields for every position, while
+// distanceFollowing makes a move, scores and undoes it, as the in-place search does
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeuristicBenchmark {
+    private static final int POSITIONS = 64;
+
+    @Param({ "5", "9", "13" })
+    public int size;
+
+    // bfs for MinPiecesHeuristic, dijkstra for the original implementation
+    @Param({ "bfs", "dijkstra" })
+    public String minPieces;
+
+    private Game[] positions;
+    private Heuristic heuristic;
+    private DistanceHeuristic distance;
+    private DistanceHeuristic following;
+    private Game followed;
+    private Move[] replies;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(3);
+        positions = new Game[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++)
+            positions[i] = Positions.randomGame(size, size * size / 3, random);
+        heuristic = minPieces.equals("dijkstra") ? new ReferenceMinPiecesHeuristic() : new MinPiecesHeuristic();
+        distance = new DistanceHeuristic();
+        following = new DistanceHeuristic();
+        // A position where the game goes on, so there are moves to follow
+        int first = 0;
+        while (positions[first].isOver())
+            first++;
+        followed = positions[first].copy();
+        following.reset(followed);
+        replies = followed.getMoves().toArray(new Move[0]);
+    }
+
+    @Benchmark
+    public int minPiecesScore() {
+        return heuristic.score(positions[next++ % POSITIONS]);
+    }
+
+    @Benchmark
+    public int distanceScore() {
+        return distance.score(positions[next++ % POSITIONS]);
+    }
+
+    @Benchmark
+    public int distanceFollowing() {
+        Move move = replies[next++ % replies.length];
+        followed.makeMove(move);
+        following.moveMade(followed, move);
+        int score = following.score(followed);
+        followed.undoMove(move);
+        following.moveUndone(followed, move);
+        return score;
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import ai.*;
+import game.*;
+
+// Chooses a move at a fixed depth from seeded positions a few moves into a game
+// A new Minimax is made for every search, so the killers and history of one
+// search do not carry over to the next and every run does the same work.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinimaxBenchmark {
+    private static final int POSITIONS = 8;
+
+    @Param({ "5" })
+    public int size;
+
+    @Param({ "2", "3", "4" })
+    public int depth;
+
+    // false for the search that copies the game at every child, true for make/undo in place
+    @Param({ "false", "true" })
+    public boolean inPlace;
+
+    private Game[] positions;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(4);
+        positions = new Game[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++)
+            positions[i] = Positions.randomGame(size, 4, random);
+    }
+
+    @Benchmark
+    public Move getCurrentPlayerMove() {
+        Minimax minimax = new Minimax(depth, new MinPiecesHeuristic(), inPlace);
+        return minimax.getCurrentPlayerMove(positions[next++ % POSITIONS]);
+    }
+}
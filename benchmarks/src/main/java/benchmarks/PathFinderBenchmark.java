@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import game.*;
+
+// Searches for paths on random boards with a third of the cells of each colour
+// Boards cycle through a fixed seeded set, so the searches take a mix of
+// lengths rather than the branch predictor learning one board.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathFinderBenchmark {
+    private static final int BOARDS = 64;
+
+    @Param({ "5", "10", "20", "30", "50" })
+    public int size;
+
+    // array for GridImpl, bitboard for BitboardGrid
+    @Param({ "array", "bitboard" })
+    public String grid;
+
+    private Grid[] boards;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(2);
+        boards = new Grid[BOARDS];
+        for (int i = 0; i < BOARDS; i++) {
+            Grid board = Positions.randomGrid(size, random);
+            boards[i] = grid.equals("bitboard") ? new BitboardGrid(board) : board;
+        }
+    }
+
+    @Benchmark
+    public boolean topToBottom() {
+        return PathFinder.topToBottom(boards[next++ % BOARDS], PieceColour.WHITE);
+    }
+
+    @Benchmark
+    public boolean leftToRight() {
+        return PathFinder.leftToRight(boards[next++ % BOARDS], PieceColour.WHITE);
+    }
+}
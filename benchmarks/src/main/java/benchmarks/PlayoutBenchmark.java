@@ -0,0 +1,33 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import game.*;
+
+// Random playouts from the empty board with PlayoutEngine, the inner loop of
+// Monte Carlo tree search. The score is playouts per second on one thread.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayoutBenchmark {
+    @Param({ "5", "9", "13" })
+    public int size;
+
+    private PlayoutEngine engine;
+
+    @Setup
+    public void setup() {
+        engine = new PlayoutEngine(size, 1);
+    }
+
+    @Benchmark
+    public PieceColour playout() {
+        engine.reset();
+        return engine.playout();
+    }
+}
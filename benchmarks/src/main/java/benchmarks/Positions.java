@@ -0,0 +1,41 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import game.*;
+
+// Seeded positions shared by the benchmarks, so every run measures the same boards
+final class Positions {
+    private Positions() {
+    }
+
+    // Returns the moves of a full board in a random order
+    static List<Move> shuffledMoves(int size, Random random) {
+        List<Move> moves = new ArrayList<>(new GameImpl(size).getMoves());
+        Collections.shuffle(moves, random);
+        return moves;
+    }
+
+    // Returns a game after the given number of random moves, stopping early if it ends
+    static Game randomGame(int size, int moves, Random random) {
+        Game game = new GameImpl(size);
+        for (Move move : shuffledMoves(size, random)) {
+            if (moves-- == 0 || game.isOver()) break;
+            game.makeMove(move);
+        }
+        return game;
+    }
+
+    // Returns a board where every cell is white, black or empty with equal chance
+    // These need not be reachable in a real game, but give paths of every shape
+    static Grid randomGrid(int size, Random random) {
+        Grid grid = new GridImpl(size);
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                grid.setPiece(row, col, PieceColour.values()[random.nextInt(3)]);
+        return grid;
+    }
+}
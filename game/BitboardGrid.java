@@ -0,0 +1,243 @@
+package game;
+
+// A Grid that packs white and black occupancy into long[] bitsets.
+// Cell (row, col) is stored at bit index row * size + col, so a 64x64 board
+// needs 64 longs per colour and copying it is two array clones.
+// PathFinder and the AI detect this class and use the index-based accessors
+// and bit-parallel flood fill instead of going through getPiece.
+public class BitboardGrid implements Grid {
+    private final int size;
+    private final long[] white;
+    private final long[] black;
+
+    // Edge and column masks, shared between copies since they never change
+    private final Masks masks;
+
+    // Scratch space for the flood fill, allocated on first use
+    // Not shared with copies
+    private long[] reach;
+    private long[] next;
+
+    private static class Masks {
+        final long[] valid;
+        final long[] topRow;
+        final long[] bottomRow;
+        final long[] leftCol;
+        final long[] rightCol;
+
+        Masks(int size) {
+            int words = wordCount(size);
+            valid = new long[words];
+            topRow = new long[words];
+            bottomRow = new long[words];
+            leftCol = new long[words];
+            rightCol = new long[words];
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int index = row * size + col;
+                    set(valid, index);
+                    if (row == 0) set(topRow, index);
+                    if (row == size - 1) set(bottomRow, index);
+                    if (col == 0) set(leftCol, index);
+                    if (col == size - 1) set(rightCol, index);
+                }
+            }
+        }
+    }
+
+    // Creates an empty grid with the given side length
+    public BitboardGrid(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive");
+        }
+        this.size = size;
+        this.white = new long[wordCount(size)];
+        this.black = new long[wordCount(size)];
+        this.masks = new Masks(size);
+    }
+
+    // Creates a bitboard holding the same pieces as another grid
+    public BitboardGrid(Grid grid) {
+        this(grid.getSize());
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                setPiece(row, col, grid.getPiece(row, col));
+    }
+
+    private BitboardGrid(BitboardGrid other) {
+        this.size = other.size;
+        this.white = other.white.clone();
+        this.black = other.black.clone();
+        this.masks = other.masks;
+    }
+
+    private static int wordCount(int size) {
+        return (size * size + 63) >>> 6;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public PieceColour getPiece(int row, int col) {
+        validatePosition(row, col);
+        return pieceAt(row * size + col);
+    }
+
+    @Override
+    public void setPiece(int row, int col, PieceColour piece) {
+        validatePosition(row, col);
+        if (piece == null) {
+            throw new IllegalArgumentException("Cannot place null piece");
+        }
+        setPieceAt(row * size + col, piece);
+    }
+
+    // Returns the piece at a cell index (row * size + col) without bounds checks
+    public PieceColour pieceAt(int index) {
+        long bit = 1L << index;
+        if ((white[index >>> 6] & bit) != 0) return PieceColour.WHITE;
+        if ((black[index >>> 6] & bit) != 0) return PieceColour.BLACK;
+        return PieceColour.NONE;
+    }
+
+    // Sets the piece at a cell index (row * size + col) without bounds checks
+    public void setPieceAt(int index, PieceColour piece) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        white[word] &= ~bit;
+        black[word] &= ~bit;
+        if (piece == PieceColour.WHITE) white[word] |= bit;
+        else if (piece == PieceColour.BLACK) black[word] |= bit;
+    }
+
+    // Copies the white or black occupancy into bits, which needs at least as many longs
+    public void copyOccupancy(PieceColour piece, long[] bits) {
+        if (piece == PieceColour.NONE) {
+            throw new IllegalArgumentException("Only white and black occupancy can be copied");
+        }
+        long[] source = piece == PieceColour.WHITE ? white : black;
+        System.arraycopy(source, 0, bits, 0, source.length);
+    }
+
+    private void validatePosition(int row, int col) {
+        if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index " + row + " is out of bounds");
+        }
+        if (col < 0 || col >= size) {
+            throw new IllegalArgumentException("Column index " + col + " is out of bounds");
+        }
+    }
+
+    // Returns the occupancy of the given colour
+    // For PieceColour.NONE this is the set of empty cells, written into scratch
+    private long[] occupancy(PieceColour piece, long[] scratch) {
+        if (piece == PieceColour.WHITE) return white;
+        if (piece == PieceColour.BLACK) return black;
+        for (int i = 0; i < scratch.length; i++)
+            scratch[i] = masks.valid[i] & ~(white[i] | black[i]);
+        return scratch;
+    }
+
+    // True if the pieces of the given colour connect the two edges
+    // Grows the set of cells reachable from the start edge one step in every
+    // direction at a time, 64 cells per operation, until it stops changing
+    boolean connects(PieceColour piece, boolean topToBottom) {
+        int words = white.length;
+        if (reach == null) {
+            reach = new long[words];
+            next = new long[words];
+        }
+        long[] empty = piece == PieceColour.NONE ? new long[words] : null;
+        long[] stones = occupancy(piece, empty);
+        long[] start = topToBottom ? masks.topRow : masks.leftCol;
+        long[] end = topToBottom ? masks.bottomRow : masks.rightCol;
+
+        boolean any = false;
+        for (int i = 0; i < words; i++) {
+            reach[i] = stones[i] & start[i];
+            any |= reach[i] != 0;
+        }
+        if (!any) return false;
+
+        while (true) {
+            boolean changed = false;
+            for (int i = 0; i < words; i++) {
+                long cur = reach[i];
+                // One column to the right: bit index + 1, but never wrap onto column 0
+                long east = (cur << 1) | (i > 0 ? reach[i - 1] >>> 63 : 0);
+                east &= ~masks.leftCol[i];
+                // One column to the left: bit index - 1, but never wrap onto the last column
+                long west = (cur >>> 1) | (i + 1 < words ? reach[i + 1] << 63 : 0);
+                west &= ~masks.rightCol[i];
+                long grown = (cur | east | west | shiftedIn(reach, i, size) | shiftedIn(reach, i, -size))
+                        & stones[i];
+                next[i] = grown;
+                changed |= grown != cur;
+            }
+            long[] swap = reach;
+            reach = next;
+            next = swap;
+            if (!changed) break;
+        }
+
+        for (int i = 0; i < words; i++)
+            if ((reach[i] & end[i]) != 0) return true;
+        return false;
+    }
+
+    // Returns word i of the bitset shifted by the given number of bits
+    // A positive shift moves cells to higher indices (down a row for shift == size)
+    private static long shiftedIn(long[] bits, int i, int shift) {
+        if (shift >= 0) {
+            int wordShift = shift >>> 6;
+            int bitShift = shift & 63;
+            int src = i - wordShift;
+            if (src < 0) return 0;
+            long result = bits[src] << bitShift;
+            if (bitShift != 0 && src > 0) result |= bits[src - 1] >>> (64 - bitShift);
+            return result;
+        } else {
+            int wordShift = (-shift) >>> 6;
+            int bitShift = (-shift) & 63;
+            int src = i + wordShift;
+            if (src >= bits.length) return 0;
+            long result = bits[src] >>> bitShift;
+            if (bitShift != 0 && src + 1 < bits.length) result |= bits[src + 1] << (64 - bitShift);
+            return result;
+        }
+    }
+
+    @Override
+    public Grid copy() {
+        return new BitboardGrid(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder representation = new StringBuilder();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                switch (pieceAt(row * size + col)) {
+                    case WHITE:
+                        representation.append('W');
+                        break;
+                    case BLACK:
+                        representation.append('B');
+                        break;
+                    case NONE:
+                        representation.append('.');
+                        break;
+                }
+            }
+            representation.append('\n');
+        }
+        return representation.toString();
+    }
+}
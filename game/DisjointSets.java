@@ -0,0 +1,122 @@
+package game;
+
+import java.util.Arrays;
+
+// A disjoint-set (union-find) structure over the cells of a board.
+// Each set also records which board edges it touches, which acts as four
+// virtual edge nodes per set. Real shared edge nodes would not work here:
+// a piece in a corner would join, say, the left edge to the top edge and
+// make unrelated groups look connected.
+//
+// Every change is written to a journal so it can be rolled back to an earlier
+// mark when a move is undone. Paths are therefore never compressed; union by
+// rank alone keeps trees O(log n) deep.
+class DisjointSets {
+    static final int TOP = 1, BOTTOM = 2, LEFT = 4, RIGHT = 8;
+
+    private final int[] parent;
+    private final int[] rank;
+    private final byte[] edges;
+
+    // Journal entries of four ints: the attached child (or -1), the root that
+    // changed, and that root's previous rank and edge mask
+    private int[] journal;
+    private int journalSize;
+
+    // Creates singleton sets for size * size cells, none touching an edge
+    DisjointSets(int size) {
+        int cells = size * size;
+        parent = new int[cells];
+        rank = new int[cells];
+        edges = new byte[cells];
+        journal = new int[4 * Math.max(cells, 4)];
+        for (int i = 0; i < cells; i++)
+            parent[i] = i;
+    }
+
+    private DisjointSets(DisjointSets other) {
+        parent = other.parent.clone();
+        rank = other.rank.clone();
+        edges = other.edges.clone();
+        journal = other.journal.clone();
+        journalSize = other.journalSize;
+    }
+
+    // Returns the representative of the set containing x
+    int find(int x) {
+        while (parent[x] != x)
+            x = parent[x];
+        return x;
+    }
+
+    // Merges the sets containing a and b, attaching the shallower tree below the deeper
+    void union(int a, int b) {
+        int rootA = find(a), rootB = find(b);
+        if (rootA == rootB) return;
+        if (rank[rootA] < rank[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        record(rootB, rootA);
+        parent[rootB] = rootA;
+        edges[rootA] |= edges[rootB];
+        if (rank[rootA] == rank[rootB]) rank[rootA]++;
+    }
+
+    // Records that the set containing x touches the given edges
+    void touch(int x, int edgeMask) {
+        int root = find(x);
+        if ((edges[root] | edgeMask) == edges[root]) return;
+        record(-1, root);
+        edges[root] |= edgeMask;
+    }
+
+    private void record(int child, int root) {
+        if (journalSize + 4 > journal.length)
+            journal = Arrays.copyOf(journal, journal.length * 2);
+        journal[journalSize++] = child;
+        journal[journalSize++] = root;
+        journal[journalSize++] = rank[root];
+        journal[journalSize++] = edges[root];
+    }
+
+    // Returns a mark that rollback can later return to
+    int mark() {
+        return journalSize;
+    }
+
+    // Undoes every union and touch made since the given mark, newest first
+    void rollback(int mark) {
+        while (journalSize > mark) {
+            int oldEdges = journal[--journalSize];
+            int oldRank = journal[--journalSize];
+            int root = journal[--journalSize];
+            int child = journal[--journalSize];
+            if (child >= 0) parent[child] = child;
+            rank[root] = oldRank;
+            edges[root] = (byte) oldEdges;
+        }
+    }
+
+    // True if the set containing x connects top to bottom or left to right
+    boolean connects(int x) {
+        return spans(edges[find(x)]);
+    }
+
+    // True if any set connects top to bottom or left to right
+    boolean hasPath() {
+        for (int i = 0; i < parent.length; i++)
+            if (parent[i] == i && spans(edges[i])) return true;
+        return false;
+    }
+
+    private static boolean spans(int edgeMask) {
+        return (edgeMask & (TOP | BOTTOM)) == (TOP | BOTTOM)
+                || (edgeMask & (LEFT | RIGHT)) == (LEFT | RIGHT);
+    }
+
+    DisjointSets copy() {
+        return new DisjointSets(this);
+    }
+}
@@ -38,6 +38,30 @@ public interface Game {
     // or the position is out of bounds
     void makeMove(Move move);
 
+    // Reverts the most recent move made with makeMove
+    // Restores the grid, the current player, whether the game is over and the winner
+    // exactly as they were before that move, so a search can explore a single game
+    // in place instead of copying it at every node
+    // Throws an IllegalArgumentException if the move is not the most recent move
+    void undoMove(Move move);
+
+    // Returns the piece at the given row and column without copying the grid
+    // Throws IllegalArgumentException if the row or column is out of bounds
+    default PieceColour getPiece(int row, int col) {
+        return getGrid().getPiece(row, col);
+    }
+
+    // Returns a 64-bit Zobrist hash of the position, including the player to move
+    // Equal positions always have equal hashes; see the Zobrist class
+    default long hashKey() {
+        return Zobrist.hash(getGrid(), currentPlayer());
+    }
+
+    // Returns the side length of the game grid
+    default int getSize() {
+        return getGrid().getSize();
+    }
+
     // Returns a copy of the grid
     // Note that this is should be a deep copy
     // Which means that the grid returned should be a new object
@@ -11,6 +11,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 
 // A class that implements the Game interface and manages the connection game
+// By default wins are detected incrementally: each colour has a disjoint-set
+// structure whose sets remember which edges they touch, so checking for a win after a move is
+// near O(1) and a running count of empty cells makes the draw check O(1).
+// Passing unionFind = false switches back to running PathFinder after every move.
+// A new game keeps its pieces in a BitboardGrid, so copies are two array clones
+// and the heuristics can read the whole board a word at a time.
 public class GameImpl implements Game {
     // Game state variables
     private final Grid boardGrid;
@@ -18,33 +24,109 @@ public class GameImpl implements Game {
     private boolean isGameOver;
     private PieceColour winningPlayer;
 
+    // Incremental win detection state (null when PathFinder is used instead)
+    private final boolean useUnionFind;
+    private final DisjointSets whiteSets;
+    private final DisjointSets blackSets;
+    private int emptyCells;
+
+    // Cells of the moves made so far, and the union-find journal mark before each,
+    // so that undoMove can restore the previous state exactly
+    private final int[] history;
+    private final int[] historyMarks;
+    private int historySize;
+
+    // Zobrist hash of the position, updated with every move and undo
+    private long positionHash;
+
     // Creates a new game with the specified board size
     public GameImpl(int size) {
+        this(size, true);
+    }
+
+    // Creates a new game, choosing between union-find and PathFinder win detection
+    public GameImpl(int size, boolean unionFind) {
         // Size validation
         if (size < 1) {
             throw new IllegalArgumentException("Board size must be at least 1");
         }
         
         // Initialize game components
-        boardGrid = new GridImpl(size);
+        boardGrid = new BitboardGrid(size);
         activePlayer = PieceColour.WHITE;  // Convention: white goes first
         isGameOver = false;
         winningPlayer = PieceColour.NONE;
+        useUnionFind = unionFind;
+        whiteSets = unionFind ? new DisjointSets(size) : null;
+        blackSets = unionFind ? new DisjointSets(size) : null;
+        emptyCells = size * size;
+        history = new int[size * size];
+        historyMarks = new int[size * size];
+    }
+
+    // Creates a game that continues from the position on the given grid
+    // The grid is copied, so any Grid implementation (e.g. BitboardGrid) can be used
+    // and the caller keeps ownership of the original.
+    // White always moves first, so the player to move is inferred from the piece counts
+    public GameImpl(Grid grid) {
+        this(grid, true);
+    }
+
+    // Creates a game from a position, choosing between union-find and PathFinder win detection
+    public GameImpl(Grid grid, boolean unionFind) {
+        boardGrid = grid.copy();
+        int size = grid.getSize();
+        useUnionFind = unionFind;
+        whiteSets = unionFind ? new DisjointSets(size) : null;
+        blackSets = unionFind ? new DisjointSets(size) : null;
+        int whitePieces = 0, blackPieces = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                PieceColour piece = boardGrid.getPiece(i, j);
+                if (piece == PieceColour.WHITE) whitePieces++;
+                else if (piece == PieceColour.BLACK) blackPieces++;
+                if (unionFind && piece != PieceColour.NONE) connectPiece(i, j, piece);
+            }
+        }
+        emptyCells = size * size - whitePieces - blackPieces;
+        history = new int[size * size];
+        historyMarks = new int[size * size];
+        activePlayer = whitePieces > blackPieces ? PieceColour.BLACK : PieceColour.WHITE;
+        isGameOver = false;
+        winningPlayer = PieceColour.NONE;
+        positionHash = Zobrist.hash(boardGrid, activePlayer);
+        if (unionFind) {
+            // Same order as checkForWinner, so both paths agree on odd positions
+            if (whiteSets.hasPath()) endGame(PieceColour.WHITE);
+            else if (blackSets.hasPath()) endGame(PieceColour.BLACK);
+            else if (emptyCells == 0) endGame(PieceColour.NONE);
+        } else {
+            isOver();
+        }
     }
 
     // Private constructor used for creating game copies
-    private GameImpl(Grid gridCopy, PieceColour player, boolean gameOver, PieceColour winner) {
-        boardGrid = gridCopy;
-        activePlayer = player;
-        isGameOver = gameOver;
-        winningPlayer = winner;
+    private GameImpl(GameImpl other) {
+        boardGrid = other.boardGrid.copy();
+        activePlayer = other.activePlayer;
+        isGameOver = other.isGameOver;
+        winningPlayer = other.winningPlayer;
+        useUnionFind = other.useUnionFind;
+        whiteSets = other.useUnionFind ? other.whiteSets.copy() : null;
+        blackSets = other.useUnionFind ? other.blackSets.copy() : null;
+        emptyCells = other.emptyCells;
+        history = other.history.clone();
+        historyMarks = other.historyMarks.clone();
+        historySize = other.historySize;
+        positionHash = other.positionHash;
     }
 
     @Override
     public boolean isOver() {
         // Return early if game is already over
-        if (isGameOver) {
-            return true;
+        // With union-find the state is always up to date after each move
+        if (isGameOver || useUnionFind) {
+            return isGameOver;
         }
 
         // Check for a winner
@@ -67,6 +149,29 @@ public class GameImpl implements Game {
         return false;
     }
 
+    // Marks the game as finished with the given winner (NONE for a draw)
+    private void endGame(PieceColour winner) {
+        isGameOver = true;
+        winningPlayer = winner;
+    }
+
+    // Joins a newly placed piece to its edges and same-coloured neighbours
+    private void connectPiece(int row, int col, PieceColour piece) {
+        DisjointSets sets = piece == PieceColour.WHITE ? whiteSets : blackSets;
+        int size = boardGrid.getSize();
+        int index = row * size + col;
+        int edgeMask = 0;
+        if (row == 0) edgeMask |= DisjointSets.TOP;
+        if (row == size - 1) edgeMask |= DisjointSets.BOTTOM;
+        if (col == 0) edgeMask |= DisjointSets.LEFT;
+        if (col == size - 1) edgeMask |= DisjointSets.RIGHT;
+        sets.touch(index, edgeMask);
+        if (row > 0 && boardGrid.getPiece(row - 1, col) == piece) sets.union(index, index - size);
+        if (row < size - 1 && boardGrid.getPiece(row + 1, col) == piece) sets.union(index, index + size);
+        if (col > 0 && boardGrid.getPiece(row, col - 1) == piece) sets.union(index, index - 1);
+        if (col < size - 1 && boardGrid.getPiece(row, col + 1) == piece) sets.union(index, index + 1);
+    }
+
     // Helper method to check if board is completely filled
     private boolean isBoardFull() {
         int boardSize = boardGrid.getSize();
@@ -162,13 +267,81 @@ public class GameImpl implements Game {
         validateMove(moveRow, moveCol);
         
         // Place the piece
-        boardGrid.setPiece(moveRow, moveCol, activePlayer);
+        PieceColour mover = activePlayer;
+        boardGrid.setPiece(moveRow, moveCol, mover);
+        emptyCells--;
+        
+        // Remember the move so it can be undone
+        history[historySize] = moveRow * boardGrid.getSize() + moveCol;
+        if (useUnionFind) {
+            historyMarks[historySize] = (mover == PieceColour.WHITE ? whiteSets : blackSets).mark();
+        }
+        historySize++;
+        positionHash ^= Zobrist.key(mover, history[historySize - 1]) ^ Zobrist.SIDE;
         
         // Alternate players
         swapPlayers();
         
         // Check if this move ended the game
-        isOver();
+        // Only the player who just moved can have completed a path
+        if (useUnionFind) {
+            connectPiece(moveRow, moveCol, mover);
+            DisjointSets sets = mover == PieceColour.WHITE ? whiteSets : blackSets;
+            if (sets.connects(moveRow * boardGrid.getSize() + moveCol)) {
+                endGame(mover);
+            } else if (emptyCells == 0) {
+                endGame(PieceColour.NONE);
+            }
+        } else {
+            isOver();
+        }
+    }
+    
+    @Override
+    public void undoMove(Move move) {
+        if (historySize == 0) {
+            throw new IllegalArgumentException("There is no move to undo");
+        }
+        
+        // Only the most recent move can be undone
+        int size = boardGrid.getSize();
+        int moveRow = move.getRow();
+        int moveCol = move.getCol();
+        int cell = history[historySize - 1];
+        if (moveRow != cell / size || moveCol != cell % size) {
+            throw new IllegalArgumentException("Only the most recent move " + new MoveImpl(cell / size, cell % size)
+                    + " can be undone");
+        }
+        historySize--;
+        
+        // The player who made the move becomes the current player again
+        swapPlayers();
+        boardGrid.setPiece(moveRow, moveCol, PieceColour.NONE);
+        emptyCells++;
+        positionHash ^= Zobrist.key(activePlayer, cell) ^ Zobrist.SIDE;
+        if (useUnionFind) {
+            DisjointSets sets = activePlayer == PieceColour.WHITE ? whiteSets : blackSets;
+            sets.rollback(historyMarks[historySize]);
+        }
+        
+        // Moves are only made while the game is running, so it was not over before
+        isGameOver = false;
+        winningPlayer = PieceColour.NONE;
+    }
+
+    @Override
+    public PieceColour getPiece(int row, int col) {
+        return boardGrid.getPiece(row, col);
+    }
+
+    @Override
+    public long hashKey() {
+        return positionHash;
+    }
+
+    @Override
+    public int getSize() {
+        return boardGrid.getSize();
     }
     
     // Validates if a move is legal (in bounds and unoccupied)
@@ -190,6 +363,15 @@ public class GameImpl implements Game {
                        PieceColour.BLACK : PieceColour.WHITE;
     }
 
+    // Copies the cells holding the given colour into bits, one bit per cell at
+    // index row * size + col, which needs (size * size + 63) / 64 longs
+    // Returns false, leaving bits alone, if the board is not a BitboardGrid
+    public boolean copyOccupancy(PieceColour piece, long[] bits) {
+        if (!(boardGrid instanceof BitboardGrid bitboard)) return false;
+        bitboard.copyOccupancy(piece, bits);
+        return true;
+    }
+
     @Override
     public Grid getGrid() {
         // Return a copy to prevent external modification
@@ -199,6 +381,6 @@ public class GameImpl implements Game {
     @Override
     public Game copy() {
         // Create a deep copy of the game
-        return new GameImpl(boardGrid.copy(), activePlayer, isGameOver, winningPlayer);
+        return new GameImpl(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads a file written by GameRecordWriter by memory-mapping it
+// The reader is a cursor: next() moves to the following record, whose fields are
+// then read with the getters. The moves are decoded into an array that is reused
+// for every record, so going through the file allocates nothing per record.
+//
+// A single mapping cannot be larger than 2 GB, so the file is mapped a window of
+// up to 1 GB at a time, and the window moves along once the rest of it might not
+// hold a whole record. An instance is not safe to share between threads.
+public class GameRecordReader implements Closeable {
+    private static final long WINDOW_BYTES = 1L << 30;
+    private static final int MAX_RECORD_BYTES = GameRecordWriter.maxRecordBytes(255, true);
+
+    private final FileChannel channel;
+    private final long length;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private int size;
+    private PieceColour winner;
+    private int label;
+    private int moveCount;
+    private final int[] cells = new int[255 * 255];
+    private boolean timed;
+    private final int[] micros = new int[255 * 255];
+    private long records;
+
+    // Opens a file of game records
+    // Throws IOException if it is not a game record file
+    public GameRecordReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            length = channel.size();
+            map(0);
+            if (length < 4 || window.getInt() != GameRecordWriter.MAGIC)
+                throw new IOException(file + " is not a game record file");
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_BYTES, length - start));
+    }
+
+    // Moves to the next record and returns true, or returns false at the end of the file
+    // Throws IOException if the file ends part way through a record
+    public boolean next() throws IOException {
+        if (window.remaining() < MAX_RECORD_BYTES && windowStart + window.limit() < length)
+            map(windowStart + window.position());
+        if (!window.hasRemaining()) return false;
+        if (window.remaining() < GameRecordWriter.HEADER_BYTES + 1) throw truncated();
+        size = window.get() & 0xFF;
+        int colour = window.get() & 0xFF;
+        timed = (colour & GameRecordWriter.TIMED) != 0;
+        colour &= ~GameRecordWriter.TIMED;
+        if (size == 0 || colour > 2) throw new IOException("Corrupt record " + records);
+        winner = PieceColour.values()[colour];
+        label = window.get() & 0xFF;
+        moveCount = getVarint();
+        int cellCount = size * size;
+        if (moveCount > cellCount) throw new IOException("Corrupt record " + records);
+        if (cellCount > 256) {
+            for (int i = 0; i < moveCount; i++)
+                cells[i] = getVarint();
+        } else {
+            if (window.remaining() < moveCount) throw truncated();
+            for (int i = 0; i < moveCount; i++)
+                cells[i] = window.get() & 0xFF;
+        }
+        if (timed) {
+            for (int i = 0; i < moveCount; i++)
+                if ((micros[i] = getVarint()) < 0) throw new IOException("Corrupt record " + records);
+        }
+        records++;
+        return true;
+    }
+
+    private int getVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!window.hasRemaining()) throw truncated();
+            byte b = window.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Corrupt record " + records);
+    }
+
+    private IOException truncated() {
+        return new IOException("The file ends part way through record " + records);
+    }
+
+    // Returns the number of records read so far
+    public long getRecordCount() {
+        return records;
+    }
+
+    // Returns the board size of the current record
+    public int getSize() {
+        return size;
+    }
+
+    // Returns the winner of the current record, NONE for a draw or an unfinished game
+    public PieceColour getWinner() {
+        return winner;
+    }
+
+    // Returns the label byte of the current record
+    public int getLabel() {
+        return label;
+    }
+
+    // Returns the number of moves of the current record
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    // Returns the cell, row * size + col, of a move of the current record
+    public int getCell(int move) {
+        if (move < 0 || move >= moveCount) throw new IllegalArgumentException("Invalid move index " + move);
+        return cells[move];
+    }
+
+    // Returns whether the current record has the time of each move
+    public boolean hasTimes() {
+        return timed;
+    }
+
+    // Returns the time in microseconds a move of the current record took
+    // Throws IllegalStateException if the record has no times
+    public int getMicros(int move) {
+        if (move < 0 || move >= moveCount) throw new IllegalArgumentException("Invalid move index " + move);
+        if (!timed) throw new IllegalStateException("Record " + (records - 1) + " has no times");
+        return micros[move];
+    }
+
+    // Replays the moves of the current record on a new game
+    public Game toGame() {
+        Game game = new GameImpl(size);
+        for (int i = 0; i < moveCount; i++)
+            game.makeMove(new MoveImpl(cells[i] / size, cells[i] % size));
+        return game;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself goes once the buffer is garbage collected
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,137 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends game records to a file in a compact binary format
+// A file starts with the 4 bytes "PCGR" and then holds records back to back:
+//   size (1 byte), winner (1 byte, a PieceColour ordinal, plus TIMED if the
+//   record has times), label (1 byte, free for the writer's use, e.g. which AI
+//   played white), the number of moves (varint), then the cell row * size + col
+//   of each move, one byte each on boards of up to 16x16 and a varint each on
+//   larger ones, and then, if the record has times, the time each move took in
+//   microseconds (varint each)
+// where a varint is 7 bits per byte, lowest first, with the top bit set on every
+// byte but the last. A 9x9 game of 60 moves takes 64 bytes, and times under 16 ms
+// add 2 bytes a move.
+//
+// Records are gathered in a direct buffer and written to the channel when it is
+// full, so writing costs a system call per MB rather than per game. Call close
+// (or flush) to write the rest. An instance is not safe to share between threads.
+public class GameRecordWriter implements Closeable {
+    static final int MAGIC = 0x50434752;
+    static final int HEADER_BYTES = 3;
+    // Set in the winner byte of a record whose moves are followed by their times
+    static final int TIMED = 0x80;
+
+    private final FileChannel channel;
+    // Big enough for a record of the largest board, 255x255, with times
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+    // Opens a file for appending, creating it if it does not exist
+    // Throws IOException if the file exists and is not a game record file
+    public GameRecordWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long length = channel.size();
+            if (length == 0) {
+                buffer.putInt(MAGIC);
+            } else {
+                ByteBuffer magic = ByteBuffer.allocate(4);
+                int read = 0;
+                while (magic.hasRemaining() && read >= 0)
+                    read = channel.read(magic, magic.position());
+                if (magic.hasRemaining() || magic.getInt(0) != MAGIC)
+                    throw new IOException(file + " is not a game record file");
+            }
+            channel.position(length);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Returns the largest number of bytes a record for the board size can take
+    static int maxRecordBytes(int size, boolean timed) {
+        int cells = size * size;
+        return HEADER_BYTES + varintLength(cells) + cells * (cells > 256 ? varintLength(cells - 1) : 1)
+                + (timed ? cells * varintLength(Integer.MAX_VALUE) : 0);
+    }
+
+    // Appends a game of the given board size and result, whose moves are the
+    // first count cells, each row * size + col
+    // Throws IllegalArgumentException if the size or label does not fit a byte or a cell is off the board
+    public void write(int size, PieceColour winner, int label, int[] cells, int count) throws IOException {
+        write(size, winner, label, cells, null, count);
+    }
+
+    // Like write, but also stores the time each move took, the first count of
+    // micros in microseconds, unless micros is null
+    // Throws IllegalArgumentException as write does, or if a time is negative
+    public void write(int size, PieceColour winner, int label, int[] cells, int[] micros, int count)
+            throws IOException {
+        if (size < 1 || size > 255) throw new IllegalArgumentException("Board size must be between 1 and 255");
+        if (label < 0 || label > 255) throw new IllegalArgumentException("The label must fit in a byte");
+        if (count < 0 || count > size * size) throw new IllegalArgumentException("Invalid move count " + count);
+        int cellCount = size * size;
+        for (int i = 0; i < count; i++) {
+            if (cells[i] < 0 || cells[i] >= cellCount)
+                throw new IllegalArgumentException("Invalid move: cell " + cells[i] + " is off the board");
+            if (micros != null && micros[i] < 0)
+                throw new IllegalArgumentException("Invalid time " + micros[i] + " for move " + i);
+        }
+        if (buffer.remaining() < maxRecordBytes(size, micros != null)) flush();
+        buffer.put((byte) size);
+        buffer.put((byte) (winner.ordinal() | (micros != null ? TIMED : 0)));
+        buffer.put((byte) label);
+        putVarint(count);
+        if (cellCount > 256) {
+            for (int i = 0; i < count; i++)
+                putVarint(cells[i]);
+        } else {
+            for (int i = 0; i < count; i++)
+                buffer.put((byte) cells[i]);
+        }
+        if (micros != null) {
+            for (int i = 0; i < count; i++)
+                putVarint(micros[i]);
+        }
+    }
+
+    // Writes out the buffered records
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0)
+            length++;
+        return length;
+    }
+}
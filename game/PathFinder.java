@@ -66,6 +66,8 @@ public class PathFinder {
     // Returns true if there is a path from the top row to the bottom row
     // consisting of pieces of the given player's colour.
     public static boolean topToBottom(Grid grid, PieceColour player) {
+        if (grid instanceof BitboardGrid bitboard)
+            return bitboard.connects(player, true);
         Collection<Position> starts = getOnRow(grid, 0, player);
         Collection<Position> ends = getOnRow(grid, grid.getSize() - 1, player);
         return findPath(grid, starts, ends);
@@ -75,6 +77,8 @@ public class PathFinder {
     // Returns true if there is a path from the left column to the right column
     // consisting of pieces of the given player's colour.
     public static boolean leftToRight(Grid grid, PieceColour player) {
+        if (grid instanceof BitboardGrid bitboard)
+            return bitboard.connects(player, false);
         Collection<Position> starts = getOnCol(grid, 0, player);
         Collection<Position> ends = getOnCol(grid, grid.getSize() - 1, player);
         return findPath(grid, starts, ends);
@@ -0,0 +1,273 @@
+package game;
+
+import java.util.SplittableRandom;
+
+// Plays random games to the end as fast as possible, for Monte Carlo evaluation
+// The engine keeps a base position, set from a Game, and a working board that
+// reset() returns to it. Moves can be played on the working board one at a time
+// (e.g. down a search tree) before playout() finishes the game at random.
+//
+// A full board does not decide the game here: both colours can have a path by
+// then, and the one completed first wins, or neither can. So a playout fills the
+// empty cells in a random order and stops at the first path, found incrementally
+// with a union-find whose sets record the edges they touch (as in GameImpl).
+//
+// Everything lives in primitive arrays allocated by the constructor, so
+// setPosition, reset, play and playout never allocate. An instance is not safe
+// to share between threads.
+public class PlayoutEngine {
+    private static final byte TOP = 1, BOTTOM = 2, LEFT = 4, RIGHT = 8;
+    private static final PieceColour[] COLOURS = PieceColour.values();
+
+    private final int size;
+    private final byte[] cellEdges;
+    private final SplittableRandom random;
+
+    // The working position; board holds PieceColour ordinals
+    private final byte[] board;
+    private final int[] parent;
+    private final byte[] edges;
+    // The empty cells in no particular order, and where each cell is in that list
+    private final int[] empty;
+    private final int[] emptyIndex;
+    private int emptyCount;
+    private PieceColour toMove;
+    private PieceColour winner;
+    private boolean over;
+
+    // The base position that reset() returns to
+    private final byte[] baseBoard;
+    private final int[] baseParent;
+    private final byte[] baseEdges;
+    private final int[] baseEmpty;
+    private final int[] baseEmptyIndex;
+    private int baseEmptyCount;
+    private PieceColour baseToMove;
+    private PieceColour baseWinner;
+    private boolean baseOver;
+
+    // Creates an engine for boards of the given size, starting from the empty board
+    // seed fixes the random moves of the playouts
+    public PlayoutEngine(int size, long seed) {
+        if (size < 1) throw new IllegalArgumentException("Board size must be at least 1");
+        this.size = size;
+        int cells = size * size;
+        cellEdges = new byte[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size, col = cell % size;
+            if (row == 0) cellEdges[cell] |= TOP;
+            if (row == size - 1) cellEdges[cell] |= BOTTOM;
+            if (col == 0) cellEdges[cell] |= LEFT;
+            if (col == size - 1) cellEdges[cell] |= RIGHT;
+        }
+        random = new SplittableRandom(seed);
+        board = new byte[cells];
+        parent = new int[cells];
+        edges = new byte[cells];
+        empty = new int[cells];
+        emptyIndex = new int[cells];
+        baseBoard = new byte[cells];
+        baseParent = new int[cells];
+        baseEdges = new byte[cells];
+        baseEmpty = new int[cells];
+        baseEmptyIndex = new int[cells];
+        clear();
+        save();
+    }
+
+    // Returns the side length of the board
+    public int getSize() {
+        return size;
+    }
+
+    // Makes the position of the game the base position, and the working position
+    // Throws IllegalArgumentException if the game is for another board size
+    public void setPosition(Game game) {
+        if (game.getSize() != size)
+            throw new IllegalArgumentException("The engine is for " + size + "x" + size + " boards");
+        clear();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                PieceColour piece = game.getPiece(row, col);
+                if (piece != PieceColour.NONE) place(row * size + col, piece);
+            }
+        }
+        toMove = game.currentPlayer();
+        over = game.isOver();
+        winner = game.winner();
+        save();
+    }
+
+    // Returns the working position to the base position
+    public void reset() {
+        int cells = board.length;
+        System.arraycopy(baseBoard, 0, board, 0, cells);
+        System.arraycopy(baseParent, 0, parent, 0, cells);
+        System.arraycopy(baseEdges, 0, edges, 0, cells);
+        System.arraycopy(baseEmpty, 0, empty, 0, cells);
+        System.arraycopy(baseEmptyIndex, 0, emptyIndex, 0, cells);
+        emptyCount = baseEmptyCount;
+        toMove = baseToMove;
+        winner = baseWinner;
+        over = baseOver;
+    }
+
+    private void clear() {
+        for (int cell = 0; cell < board.length; cell++) {
+            board[cell] = 0;
+            parent[cell] = cell;
+            edges[cell] = cellEdges[cell];
+            empty[cell] = cell;
+            emptyIndex[cell] = cell;
+        }
+        emptyCount = board.length;
+        toMove = PieceColour.WHITE;
+        winner = PieceColour.NONE;
+        over = false;
+    }
+
+    private void save() {
+        int cells = board.length;
+        System.arraycopy(board, 0, baseBoard, 0, cells);
+        System.arraycopy(parent, 0, baseParent, 0, cells);
+        System.arraycopy(edges, 0, baseEdges, 0, cells);
+        System.arraycopy(empty, 0, baseEmpty, 0, cells);
+        System.arraycopy(emptyIndex, 0, baseEmptyIndex, 0, cells);
+        baseEmptyCount = emptyCount;
+        baseToMove = toMove;
+        baseWinner = winner;
+        baseOver = over;
+    }
+
+    private int find(int cell) {
+        // Path halving: nothing is ever undone, so the trees may be flattened
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    // Joins the set of other to the set rooted at root, or makes it the root if
+    // root is -1, and returns the root of the joined set
+    private int union(int root, int other) {
+        other = find(other);
+        if (root < 0) return other;
+        if (other != root) {
+            parent[other] = root;
+            edges[root] |= edges[other];
+        }
+        return root;
+    }
+
+    // Puts a piece on an empty cell and returns true if it completes a path
+    private boolean place(int cell, PieceColour piece) {
+        int last = empty[--emptyCount];
+        int index = emptyIndex[cell];
+        empty[index] = last;
+        emptyIndex[last] = index;
+        empty[emptyCount] = cell;
+        emptyIndex[cell] = emptyCount;
+        return connect(cell, (byte) piece.ordinal());
+    }
+
+    // Colours a cell, joins it to its neighbours of the same colour and returns
+    // true if its set now spans the board
+    private boolean connect(int cell, byte colour) {
+        board[cell] = colour;
+        // The edge flags of the cell say which neighbours exist, without a division
+        int border = cellEdges[cell];
+        // The new cell hangs under an existing set rather than the other way round,
+        // which keeps the trees shallow without a rank array to reset
+        int root = -1;
+        if ((border & TOP) == 0 && board[cell - size] == colour) root = union(root, cell - size);
+        if ((border & BOTTOM) == 0 && board[cell + size] == colour) root = union(root, cell + size);
+        if ((border & LEFT) == 0 && board[cell - 1] == colour) root = union(root, cell - 1);
+        if ((border & RIGHT) == 0 && board[cell + 1] == colour) root = union(root, cell + 1);
+        if (root < 0) {
+            root = cell;
+        } else {
+            parent[cell] = root;
+            edges[root] |= edges[cell];
+        }
+        int mask = edges[root];
+        return (mask & (TOP | BOTTOM)) == (TOP | BOTTOM) || (mask & (LEFT | RIGHT)) == (LEFT | RIGHT);
+    }
+
+    // Plays a move for the current player on the working position
+    // cell is row * size + col
+    // Throws IllegalArgumentException if the game is over or the cell is not empty
+    public void play(int cell) {
+        if (over) throw new IllegalArgumentException("The game is over");
+        if (cell < 0 || cell >= board.length || board[cell] != 0)
+            throw new IllegalArgumentException("Invalid move: cell " + cell + " is not empty");
+        move(cell);
+    }
+
+    private void move(int cell) {
+        PieceColour mover = toMove;
+        toMove = mover == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE;
+        if (place(cell, mover)) {
+            over = true;
+            winner = mover;
+        } else if (emptyCount == 0) {
+            over = true;
+        }
+    }
+
+    // Plays random moves on the working position until the game ends and returns
+    // the winner, or NONE for a draw
+    // The order is a Fisher-Yates shuffle of the empty list done as the moves are
+    // played, and the game is over afterwards, so the list is not kept up to date
+    public PieceColour playout() {
+        if (over) return winner;
+        byte colour = (byte) toMove.ordinal();
+        byte other = (byte) (colour ^ 3);
+        int count = emptyCount;
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(count - i);
+            int cell = empty[j];
+            empty[j] = empty[i];
+            empty[i] = cell;
+            if (connect(cell, colour)) {
+                over = true;
+                winner = COLOURS[colour];
+                toMove = COLOURS[other];
+                emptyCount = 0;
+                return winner;
+            }
+            byte swap = colour;
+            colour = other;
+            other = swap;
+        }
+        over = true;
+        toMove = COLOURS[colour];
+        emptyCount = 0;
+        return winner;
+    }
+
+    // True if the game on the working position is over
+    public boolean isOver() {
+        return over;
+    }
+
+    // Returns the winner on the working position, or NONE if there is none yet or it is a draw
+    public PieceColour winner() {
+        return winner;
+    }
+
+    // Returns the player to move on the working position
+    public PieceColour currentPlayer() {
+        return toMove;
+    }
+
+    // Returns the piece on a cell of the working position, where cell is row * size + col
+    public PieceColour getPiece(int cell) {
+        return COLOURS[board[cell]];
+    }
+
+    // True if a cell of the working position is empty
+    public boolean isEmpty(int cell) {
+        return board[cell] == 0;
+    }
+}
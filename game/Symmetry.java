@@ -0,0 +1,160 @@
+package game;
+
+// The symmetries of the board: its 8 rotations and reflections, and swapping colours
+// The rules treat top-bottom and left-right paths alike, so a position and its
+// mirror images have the same result and their best moves map onto each other.
+// They also treat the colours alike apart from who moves first, so swapping the
+// colour of every piece and the player to move gives a position that is as good
+// for the new player to move as the original was for the old one.
+//
+// A transform t in 0-7 maps the cell at (row, col) by reversing the rows if
+// bit 0 is set, then the columns if bit 1 is set, then swapping row and column
+// if bit 2 is set. Transform 0 is the identity. Transforms 8-15 do the same and
+// also swap the colours (COLOUR_SWAP).
+//
+// The canonical form of a position is its image with the smallest Zobrist hash,
+// so all the images of a position share one canonical hash. Caches keyed by it
+// hold one entry where they would hold up to 8 (or 16), as long as any move
+// stored with it is mapped through the canonical transform.
+public class Symmetry {
+    // The number of rotations and reflections
+    public static final int COUNT = 8;
+    // Set in a transform that also swaps the colours
+    public static final int COLOUR_SWAP = 8;
+
+    // Reads the piece on a cell of a Game or a Grid
+    private interface Board {
+        PieceColour getPiece(int row, int col);
+    }
+
+    private Symmetry() {
+    }
+
+    // Returns the cell (row * size + col) that a transform maps the given cell to
+    public static int transform(int t, int cell, int size) {
+        int row = cell / size, col = cell % size;
+        if ((t & 1) != 0) row = size - 1 - row;
+        if ((t & 2) != 0) col = size - 1 - col;
+        return (t & 4) != 0 ? col * size + row : row * size + col;
+    }
+
+    // Returns the colour a transform maps a piece or player to
+    public static PieceColour transform(int t, PieceColour piece) {
+        if ((t & COLOUR_SWAP) == 0 || piece == PieceColour.NONE) return piece;
+        return piece == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE;
+    }
+
+    // Returns the image of a grid under a transform, as a new grid
+    public static Grid transform(int t, Grid grid) {
+        int size = grid.getSize();
+        Grid image = new GridImpl(size);
+        for (int cell = 0; cell < size * size; cell++) {
+            int target = transform(t, cell, size);
+            image.setPiece(target / size, target % size, transform(t, grid.getPiece(cell / size, cell % size)));
+        }
+        return image;
+    }
+
+    // Returns the transform that undoes t
+    // Swapping after a reflection is the same as reflecting the other axis after the swap
+    public static int inverse(int t) {
+        return (t & 4) == 0 ? t : t & COLOUR_SWAP | 4 | (t & 1) << 1 | (t & 2) >> 1;
+    }
+
+    // Returns the Zobrist hashes of the 8 images of a position, indexed by transform
+    public static long[] hashes(Game game) {
+        return hashes(game, false);
+    }
+
+    // Returns the Zobrist hashes of the images of a position, indexed by transform:
+    // 16 of them with colourSwap, or else 8
+    public static long[] hashes(Game game, boolean colourSwap) {
+        return hashes(game.getSize(), game.currentPlayer(), colourSwap, game::getPiece);
+    }
+
+    // Returns the Zobrist hashes of the images of a grid with the given player to move
+    public static long[] hashes(Grid grid, PieceColour toMove, boolean colourSwap) {
+        return hashes(grid.getSize(), toMove, colourSwap, grid::getPiece);
+    }
+
+    private static long[] hashes(int size, PieceColour toMove, boolean colourSwap, Board board) {
+        long[] hashes = new long[colourSwap ? 2 * COUNT : COUNT];
+        for (int t = 0; t < hashes.length; t++)
+            hashes[t] = transform(t, toMove) == PieceColour.BLACK ? Zobrist.SIDE : 0;
+        for (int cell = 0; cell < size * size; cell++) {
+            PieceColour piece = board.getPiece(cell / size, cell % size);
+            if (piece == PieceColour.NONE) continue;
+            for (int t = 0; t < hashes.length; t++)
+                hashes[t] ^= Zobrist.key(transform(t, piece), transform(t, cell, size));
+        }
+        return hashes;
+    }
+
+    // Returns the transform with the smallest hash, the lowest if several share it
+    private static int smallest(long[] hashes) {
+        int best = 0;
+        for (int t = 1; t < hashes.length; t++)
+            if (hashes[t] < hashes[best]) best = t;
+        return best;
+    }
+
+    // Returns the transform that maps the position to its canonical form
+    // When several do (the position is symmetric) the lowest is returned
+    public static int canonicalTransform(Game game) {
+        return smallest(hashes(game));
+    }
+
+    // Returns the transform that maps a grid, with the given player to move, to its
+    // canonical form, also considering colour swaps if colourSwap is true
+    public static int canonicalTransform(Grid grid, PieceColour toMove, boolean colourSwap) {
+        return smallest(hashes(grid, toMove, colourSwap));
+    }
+
+    // Returns the Zobrist hash of the canonical form of the position
+    public static long canonicalHash(Game game) {
+        return canonicalHash(game, false);
+    }
+
+    // Returns the Zobrist hash of the canonical form of the position, also
+    // considering colour swaps if colourSwap is true
+    public static long canonicalHash(Game game, boolean colourSwap) {
+        long[] hashes = hashes(game, colourSwap);
+        return hashes[smallest(hashes)];
+    }
+
+    // Returns the Zobrist hash of the canonical form of a grid with the given player to move
+    public static long canonicalHash(Grid grid, PieceColour toMove, boolean colourSwap) {
+        long[] hashes = hashes(grid, toMove, colourSwap);
+        return hashes[smallest(hashes)];
+    }
+
+    // Returns the rotations and reflections that leave the position unchanged, as
+    // a bit mask with bit t set for transform t; bit 0 (the identity) is always set
+    public static int symmetries(Game game) {
+        long[] hashes = hashes(game);
+        int mask = 1;
+        for (int t = 1; t < COUNT; t++)
+            if (hashes[t] == hashes[0]) mask |= 1 << t;
+        return mask;
+    }
+
+    // Removes the moves that a symmetry of the position maps onto an earlier move
+    // in cells, keeping the order of the others, and returns how many are left
+    // The moves removed lead to mirror images of positions that are kept, so a
+    // search of the root loses nothing by skipping them.
+    public static int distinctMoves(Game game, int[] cells, int count) {
+        int mask = symmetries(game);
+        if (mask == 1) return count;
+        int size = game.getSize();
+        boolean[] covered = new boolean[size * size];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (covered[cell]) continue;
+            for (int t = 0; t < COUNT; t++)
+                if ((mask & 1 << t) != 0) covered[transform(t, cell, size)] = true;
+            cells[kept++] = cell;
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,41 @@
+package game;
+
+// Zobrist keys for hashing positions
+// Each (colour, cell) pair has a fixed pseudo-random 64-bit key and a position
+// hashes to the XOR of the keys of its pieces, plus SIDE when black is to move.
+// Placing or removing a piece is then a single XOR, so games can keep their
+// hash up to date incrementally.
+// Keys are derived from the cell index with the SplitMix64 finaliser, so they
+// are the same in every run and no table is needed for any board size.
+public class Zobrist {
+    // Mixed into the hash when BLACK is the player to move
+    public static final long SIDE = mix(-1L);
+
+    private Zobrist() {
+    }
+
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Returns the key for a piece of the given colour at a cell index (row * size + col)
+    // PieceColour.NONE has the key 0
+    public static long key(PieceColour piece, int index) {
+        if (piece == PieceColour.WHITE) return mix(2L * index);
+        if (piece == PieceColour.BLACK) return mix(2L * index + 1);
+        return 0;
+    }
+
+    // Computes the hash of a grid from scratch
+    public static long hash(Grid grid, PieceColour toMove) {
+        int size = grid.getSize();
+        long hash = toMove == PieceColour.BLACK ? SIDE : 0;
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                hash ^= key(grid.getPiece(row, col), row * size + col);
+        return hash;
+    }
+}
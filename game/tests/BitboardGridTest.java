@@ -0,0 +1,107 @@
+package game.tests;
+
+import java.util.Random;
+
+import game.BitboardGrid;
+import game.Game;
+import game.GameImpl;
+import game.Grid;
+import game.GridImpl;
+import game.MoveImpl;
+import game.PathFinder;
+import game.PieceColour;
+
+public class BitboardGridTest extends Test {
+    public static void main(String[] args) {
+        Grid grid = new BitboardGrid(5);
+        expect(5, grid.getSize());
+        expect(PieceColour.NONE, grid.getPiece(0, 0));
+        expect(PieceColour.NONE, grid.getPiece(4, 4));
+        expect(".....\n.....\n.....\n.....\n.....\n", grid.toString());
+        grid.setPiece(2, 1, PieceColour.WHITE);
+        grid.setPiece(0, 0, PieceColour.BLACK);
+        grid.setPiece(4, 4, PieceColour.WHITE);
+        expect(PieceColour.WHITE, grid.getPiece(2, 1));
+        expect(PieceColour.BLACK, grid.getPiece(0, 0));
+        expect("B....\n.....\n.W...\n.....\n....W\n", grid.toString());
+        grid.setPiece(4, 4, PieceColour.NONE);
+        expect(PieceColour.NONE, grid.getPiece(4, 4));
+        boolean caught = false;
+        try {
+            grid.setPiece(4, 5, PieceColour.BLACK);
+        } catch (IllegalArgumentException e) {
+            caught = true;
+        }
+        expect(true, caught);
+
+        Grid copy = grid.copy();
+        copy.setPiece(1, 2, PieceColour.BLACK);
+        expect(PieceColour.BLACK, copy.getPiece(1, 2));
+        expect(PieceColour.NONE, grid.getPiece(1, 2));
+        caught = false;
+        try {
+            copy.getPiece(-1, 2);
+        } catch (IllegalArgumentException e) {
+            caught = true;
+        }
+        expect(true, caught);
+
+        // A 64x64 board spans 64 words, so a straight column crosses every word boundary
+        Grid large = new BitboardGrid(64);
+        for (int row = 0; row < 64; row++)
+            large.setPiece(row, 37, PieceColour.BLACK);
+        expect(true, PathFinder.topToBottom(large, PieceColour.BLACK));
+        expect(false, PathFinder.leftToRight(large, PieceColour.BLACK));
+        large.setPiece(40, 37, PieceColour.WHITE);
+        expect(false, PathFinder.topToBottom(large, PieceColour.BLACK));
+
+        // A path must not wrap from the last column of one row onto the next row
+        Grid wrap = new BitboardGrid(3);
+        wrap.setPiece(0, 2, PieceColour.WHITE);
+        wrap.setPiece(1, 0, PieceColour.WHITE);
+        wrap.setPiece(2, 0, PieceColour.WHITE);
+        expect(false, PathFinder.topToBottom(wrap, PieceColour.WHITE));
+
+        // The bitboard flood fill must agree with the breadth-first search on random boards
+        Random random = new Random(42);
+        int mismatches = 0;
+        for (int trial = 0; trial < 400; trial++) {
+            int size = 5 + random.nextInt(60);
+            // Densities either side of the percolation threshold give a mix of connected boards
+            double density = 0.4 + 0.4 * random.nextDouble();
+            Grid reference = new GridImpl(size);
+            Grid bitboard = new BitboardGrid(size);
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    PieceColour piece = random.nextDouble() < density ? PieceColour.WHITE
+                            : random.nextBoolean() ? PieceColour.BLACK : PieceColour.NONE;
+                    reference.setPiece(row, col, piece);
+                    bitboard.setPiece(row, col, piece);
+                }
+            }
+            for (PieceColour piece : PieceColour.values()) {
+                if (PathFinder.topToBottom(reference, piece) != PathFinder.topToBottom(bitboard, piece))
+                    mismatches++;
+                if (PathFinder.leftToRight(reference, piece) != PathFinder.leftToRight(bitboard, piece))
+                    mismatches++;
+            }
+        }
+        expect(0, mismatches);
+
+        // A game started from a bitboard keeps using it through copies
+        Game game = new GameImpl(new BitboardGrid(3));
+        game.makeMove(new MoveImpl(0, 0));
+        Game gameCopy = game.copy();
+        gameCopy.makeMove(new MoveImpl(1, 1));
+        expect(true, game.getGrid() instanceof BitboardGrid);
+        expect(PieceColour.NONE, game.getGrid().getPiece(1, 1));
+        expect(PieceColour.BLACK, gameCopy.getGrid().getPiece(1, 1));
+        expect(PieceColour.WHITE, gameCopy.currentPlayer());
+
+        // A new game of any size is backed by a bitboard
+        expect(true, new GameImpl(5).getGrid() instanceof BitboardGrid);
+        expect(true, new GameImpl(64, false).getGrid() instanceof BitboardGrid);
+
+        checkAllTestsPassed();
+    }
+}
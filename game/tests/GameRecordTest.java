@@ -0,0 +1,139 @@
+package game.tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import game.*;
+
+public class GameRecordTest extends Test {
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(11);
+        Path file = Files.createTempFile("games", ".bin");
+        Files.delete(file);
+        try {
+            // Random games on small boards (a byte per move) and large ones (varints),
+            // every third without times, written in two sessions to check appending
+            List<int[]> games = new ArrayList<>();
+            List<int[]> times = new ArrayList<>();
+            List<Integer> sizes = new ArrayList<>();
+            List<PieceColour> winners = new ArrayList<>();
+            for (int session = 0; session < 2; session++) {
+                try (GameRecordWriter writer = new GameRecordWriter(file)) {
+                    for (int i = 0; i < 500; i++) {
+                        int size = i % 50 == 0 ? 17 + random.nextInt(30) : 1 + random.nextInt(16);
+                        Game game = new GameImpl(size);
+                        List<Move> moves = new ArrayList<>(game.getMoves());
+                        Collections.shuffle(moves, random);
+                        int[] cells = new int[moves.size()];
+                        int count = 0;
+                        for (Move move : moves) {
+                            if (game.isOver()) break;
+                            game.makeMove(move);
+                            cells[count++] = move.getRow() * size + move.getCol();
+                        }
+                        int[] micros = null;
+                        if (i % 3 != 0) {
+                            micros = new int[count];
+                            for (int j = 0; j < count; j++)
+                                micros[j] = random.nextInt(1 << random.nextInt(31));
+                        }
+                        games.add(Arrays.copyOf(cells, count));
+                        times.add(micros);
+                        sizes.add(size);
+                        winners.add(game.winner());
+                        writer.write(size, game.winner(), i & 0xFF, cells, micros, count);
+                    }
+                }
+            }
+
+            int read = 0, wrong = 0;
+            try (GameRecordReader reader = new GameRecordReader(file)) {
+                while (reader.next()) {
+                    int[] expected = games.get(read), micros = times.get(read);
+                    if (reader.getSize() != sizes.get(read) || reader.getWinner() != winners.get(read)
+                            || reader.getLabel() != (read % 500 & 0xFF) || reader.getMoveCount() != expected.length
+                            || reader.hasTimes() != (micros != null)) {
+                        wrong++;
+                    } else {
+                        for (int i = 0; i < expected.length; i++) {
+                            if (reader.getCell(i) != expected[i]) wrong++;
+                            if (micros != null && reader.getMicros(i) != micros[i]) wrong++;
+                        }
+                    }
+                    read++;
+                }
+                expect(1000L, reader.getRecordCount());
+            }
+            expect(1000, read);
+            expect(0, wrong);
+
+            // Replaying a record gives the same game
+            try (GameRecordReader reader = new GameRecordReader(file)) {
+                reader.next();
+                reader.next();
+                expect(winners.get(1), reader.toGame().winner());
+            }
+
+            // Bad moves are refused before anything is written
+            try (GameRecordWriter writer = new GameRecordWriter(file)) {
+                writer.write(3, PieceColour.NONE, 0, new int[] { 4, 9 }, 2);
+                expect("IllegalArgumentException", "no exception");
+            } catch (IllegalArgumentException e) {
+                expect(true, true);
+            }
+            try (GameRecordWriter writer = new GameRecordWriter(file)) {
+                writer.write(3, PieceColour.NONE, 0, new int[] { 4, 5 }, new int[] { 10, -1 }, 2);
+                expect("IllegalArgumentException", "no exception");
+            } catch (IllegalArgumentException e) {
+                expect(true, true);
+            }
+            try (GameRecordReader reader = new GameRecordReader(file)) {
+                while (reader.next()) {
+                }
+                expect(1000L, reader.getRecordCount());
+            }
+
+            // A record without times has none to read
+            try (GameRecordReader reader = new GameRecordReader(file)) {
+                reader.next();
+                reader.getMicros(0);
+                expect("IllegalStateException", "no exception");
+            } catch (IllegalStateException e) {
+                expect(true, true);
+            }
+
+            // A cut-off record is reported
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+            try (GameRecordReader reader = new GameRecordReader(file)) {
+                while (reader.next()) {
+                }
+                expect("IOException", "no exception");
+            } catch (IOException e) {
+                expect(true, e.getMessage().contains("part way"));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // Other files are refused
+        Path other = Files.createTempFile("other", ".txt");
+        try {
+            Files.writeString(other, "not a game");
+            new GameRecordReader(other).close();
+            expect("IOException", "no exception");
+        } catch (IOException e) {
+            expect(true, true);
+        } finally {
+            Files.delete(other);
+        }
+
+        checkAllTestsPassed();
+    }
+}
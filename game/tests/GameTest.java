@@ -6,7 +6,11 @@
  */
 package game.tests;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import game.*;
 
 // Test class for GameImpl.
@@ -243,6 +247,104 @@ public class GameTest {
         test(game2x2c.isOver(), "2x2 game should be over after filling board");
         test(game2x2c.winner() == PieceColour.NONE, "Game should be a draw when no player has a path");
         
+        // ============= WIN DETECTION TESTS =============
+        System.out.println("\n=== Testing Union-Find Against PathFinder ===");
+        
+        // Play the same random move sequences with both win detection paths
+        Random random = new Random(7);
+        int disagreements = 0;
+        for (int trial = 0; trial < 500; trial++) {
+            int size = 1 + random.nextInt(9);
+            Game fast = new GameImpl(size);
+            Game reference = new GameImpl(size, false);
+            List<Move> order = new ArrayList<>(fast.getMoves());
+            Collections.shuffle(order, random);
+            for (Move move : order) {
+                if (reference.isOver()) break;
+                fast.makeMove(move);
+                reference.makeMove(move);
+                if (fast.isOver() != reference.isOver() || fast.winner() != reference.winner())
+                    disagreements++;
+            }
+            // A game rebuilt from the final grid must reach the same verdict
+            Game rebuilt = new GameImpl(reference.getGrid());
+            if (rebuilt.isOver() != reference.isOver() || rebuilt.winner() != reference.winner())
+                disagreements++;
+        }
+        test(disagreements == 0, "Union-find and PathFinder agree on random games (" + disagreements + " disagreements)");
+        
+        // ============= UNDO TESTS =============
+        System.out.println("\n=== Testing Undo ===");
+        
+        // Undo the winning move of the WHITE top-to-bottom game
+        game = new GameImpl(3);
+        game.makeMove(new MoveImpl(0, 0)); // WHITE
+        game.makeMove(new MoveImpl(0, 1)); // BLACK
+        game.makeMove(new MoveImpl(1, 0)); // WHITE
+        game.makeMove(new MoveImpl(1, 1)); // BLACK
+        game.makeMove(new MoveImpl(2, 0)); // WHITE connects top to bottom
+        game.undoMove(new MoveImpl(2, 0));
+        test(!game.isOver(), "Game is running again after undoing the winning move");
+        test(game.winner() == PieceColour.NONE, "No winner after undoing the winning move");
+        test(game.currentPlayer() == PieceColour.WHITE, "WHITE to move again after undo");
+        test(game.getGrid().getPiece(2, 0) == PieceColour.NONE, "Undone piece is removed from the grid");
+        test(game.getMoves().size() == 5, "Undone cell is available again (got " + game.getMoves().size() + ")");
+        
+        // Only the most recent move can be undone
+        exceptionThrown = false;
+        try {
+            game.undoMove(new MoveImpl(0, 0));
+        } catch (IllegalArgumentException e) {
+            exceptionThrown = true;
+        }
+        test(exceptionThrown, "Exception thrown when undoing a move other than the last");
+        
+        exceptionThrown = false;
+        try {
+            new GameImpl(3).undoMove(new MoveImpl(0, 0));
+        } catch (IllegalArgumentException e) {
+            exceptionThrown = true;
+        }
+        test(exceptionThrown, "Exception thrown when undoing with no moves made");
+        
+        // Play random games, undo them completely and replay them in a different order
+        int undoMismatches = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            int size = 1 + random.nextInt(8);
+            boolean unionFind = random.nextBoolean();
+            Game played = new GameImpl(size, unionFind);
+            List<Move> order = new ArrayList<>(played.getMoves());
+            Collections.shuffle(order, random);
+            List<Move> made = new ArrayList<>();
+            List<String> states = new ArrayList<>();
+            for (Move move : order) {
+                if (played.isOver()) break;
+                states.add(played.getGrid() + " " + played.currentPlayer() + played.isOver() + played.winner());
+                played.makeMove(move);
+                made.add(move);
+                // Undoing and redoing a move must give back the same game
+                String after = played.getGrid() + " " + played.currentPlayer() + played.isOver() + played.winner();
+                played.undoMove(move);
+                played.makeMove(move);
+                if (!after.equals(played.getGrid() + " " + played.currentPlayer() + played.isOver() + played.winner()))
+                    undoMismatches++;
+            }
+            for (int i = made.size() - 1; i >= 0; i--) {
+                played.undoMove(made.get(i));
+                if (!states.get(i).equals(played.getGrid() + " " + played.currentPlayer() + played.isOver() + played.winner()))
+                    undoMismatches++;
+            }
+            // Replaying after a full undo must agree with a fresh game
+            Game fresh = new GameImpl(size, !unionFind);
+            for (Move move : made) {
+                played.makeMove(move);
+                fresh.makeMove(move);
+                if (played.isOver() != fresh.isOver() || played.winner() != fresh.winner())
+                    undoMismatches++;
+            }
+        }
+        test(undoMismatches == 0, "Undo restores every earlier state (" + undoMismatches + " mismatches)");
+        
         // ============= RESULTS =============
         System.out.println("\n=== TEST RESULTS ===");
         System.out.println("Passed: " + passedTests + "/" + totalTests + " tests");
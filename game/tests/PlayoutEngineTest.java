@@ -0,0 +1,96 @@
+package game.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import game.*;
+
+public class PlayoutEngineTest extends Test {
+    public static void main(String[] args) {
+        Random random = new Random(5);
+
+        // Moves played one at a time agree with GameImpl after every move
+        int disagreements = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            int size = 1 + random.nextInt(9);
+            Game game = new GameImpl(size);
+            PlayoutEngine engine = new PlayoutEngine(size, trial);
+            List<Move> moves = new ArrayList<>(game.getMoves());
+            Collections.shuffle(moves, random);
+            for (Move move : moves) {
+                if (game.isOver()) break;
+                game.makeMove(move);
+                engine.play(move.getRow() * size + move.getCol());
+                if (engine.isOver() != game.isOver() || engine.winner() != game.winner()
+                        || !engine.isOver() && engine.currentPlayer() != game.currentPlayer())
+                    disagreements++;
+            }
+        }
+        expect(0, disagreements);
+
+        // Playouts from positions part way through a game
+        int wrong = 0, playouts = 0;
+        for (int trial = 0; trial < 200; trial++) {
+            int size = 2 + random.nextInt(9);
+            Game game = new GameImpl(size);
+            List<Move> moves = new ArrayList<>(game.getMoves());
+            Collections.shuffle(moves, random);
+            for (Move move : moves.subList(0, random.nextInt(moves.size()))) {
+                if (game.isOver()) break;
+                game.makeMove(move);
+            }
+            if (game.isOver()) continue;
+            PlayoutEngine engine = new PlayoutEngine(size, trial);
+            engine.setPosition(game);
+            for (int i = 0; i < 20; i++) {
+                engine.reset();
+                PieceColour winner = engine.playout();
+                playouts++;
+                Grid grid = new GridImpl(size);
+                int white = 0, black = 0;
+                for (int cell = 0; cell < size * size; cell++) {
+                    PieceColour piece = engine.getPiece(cell);
+                    grid.setPiece(cell / size, cell % size, piece);
+                    if (game.getPiece(cell / size, cell % size) != PieceColour.NONE
+                            && game.getPiece(cell / size, cell % size) != piece)
+                        wrong++;
+                    if (piece == PieceColour.WHITE) white++;
+                    else if (piece == PieceColour.BLACK) black++;
+                }
+                boolean whitePath = PathFinder.topToBottom(grid, PieceColour.WHITE)
+                        || PathFinder.leftToRight(grid, PieceColour.WHITE);
+                boolean blackPath = PathFinder.topToBottom(grid, PieceColour.BLACK)
+                        || PathFinder.leftToRight(grid, PieceColour.BLACK);
+                // The winner has a path, and the game stopped with the winner's move
+                if (winner == PieceColour.WHITE && (!whitePath || white != black + 1)) wrong++;
+                if (winner == PieceColour.BLACK && (!blackPath || white != black)) wrong++;
+                // A draw fills the board with no path
+                if (winner == PieceColour.NONE && (whitePath || blackPath || white + black != size * size)) wrong++;
+            }
+            // reset() returns to the position of the game
+            engine.reset();
+            expect(game.currentPlayer(), engine.currentPlayer());
+        }
+        System.out.println("Checked " + playouts + " playouts");
+        expect(0, wrong);
+
+        // A finished game stays finished
+        Game won = new GameImpl(2);
+        won.makeMove(new MoveImpl(0, 0));
+        won.makeMove(new MoveImpl(0, 1));
+        won.makeMove(new MoveImpl(1, 0));
+        PlayoutEngine engine = new PlayoutEngine(2, 0);
+        engine.setPosition(won);
+        expect(PieceColour.WHITE, engine.playout());
+        try {
+            engine.play(3);
+            expect("IllegalArgumentException", "no exception");
+        } catch (IllegalArgumentException e) {
+            expect(true, true);
+        }
+
+        checkAllTestsPassed();
+    }
+}
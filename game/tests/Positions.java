@@ -0,0 +1,86 @@
+package game.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import game.*;
+
+// Positions and brute-force answers shared by the tests, to check faster code against
+public class Positions {
+    // Plays up to the given number of random moves on an empty board, stopping if the game ends
+    public static Game randomPosition(int size, int moves, Random random) {
+        Game game = new GameImpl(size);
+        List<Move> all = new ArrayList<>(game.getMoves());
+        Collections.shuffle(all, random);
+        for (int i = 0; i < moves && !game.isOver(); i++)
+            game.makeMove(all.get(i));
+        return game;
+    }
+
+    public static int emptyCells(Game game) {
+        int empty = 0;
+        for (int row = 0; row < game.getSize(); row++)
+            for (int col = 0; col < game.getSize(); col++)
+                if (game.getPiece(row, col) == PieceColour.NONE) empty++;
+        return empty;
+    }
+
+    // The result for the player to move with perfect play, by searching every line:
+    // 100 - d for a win in d moves, -(100 - d) for a loss in d moves, and 0 for a draw
+    // Only for small boards, as it takes time exponential in the empty cells.
+    public static int solve(Game game) {
+        int best = Integer.MIN_VALUE;
+        for (Move move : game.getMoves()) {
+            game.makeMove(move);
+            int score;
+            if (game.isOver()) {
+                score = game.winner() == PieceColour.NONE ? 0 : 99;
+            } else {
+                int child = -solve(game);
+                score = child > 0 ? child - 1 : child < 0 ? child + 1 : 0;
+            }
+            game.undoMove(move);
+            best = Math.max(best, score);
+            // Nothing beats winning at once
+            if (best == 99) break;
+        }
+        return best;
+    }
+
+    // The fewest empty cells on a path of the player's pieces and empty cells
+    // between opposite edges, or size * size if there is none
+    public static int distance(Grid grid, PieceColour player) {
+        int size = grid.getSize(), best = size * size;
+        for (int direction = 0; direction < 2; direction++) {
+            int[][] dist = new int[size][size];
+            for (int[] row : dist)
+                Arrays.fill(row, Integer.MAX_VALUE);
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int row = 0; row < size; row++) {
+                    for (int col = 0; col < size; col++) {
+                        PieceColour piece = grid.getPiece(row, col);
+                        if (piece != player && piece != PieceColour.NONE) continue;
+                        int cost = piece == player ? 0 : 1;
+                        int from = (direction == 0 ? row : col) == 0 ? 0 : Integer.MAX_VALUE;
+                        if (row > 0) from = Math.min(from, dist[row - 1][col]);
+                        if (row < size - 1) from = Math.min(from, dist[row + 1][col]);
+                        if (col > 0) from = Math.min(from, dist[row][col - 1]);
+                        if (col < size - 1) from = Math.min(from, dist[row][col + 1]);
+                        if (from != Integer.MAX_VALUE && from + cost < dist[row][col]) {
+                            dist[row][col] = from + cost;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++)
+                best = Math.min(best, direction == 0 ? dist[size - 1][i] : dist[i][size - 1]);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,63 @@
+package game.tests;
+
+import game.*;
+
+public class SymmetryTest extends Test {
+    public static void main(String[] args) {
+        // The empty board is symmetric under all 8 transforms, and has 6 kinds of
+        // cell on 5x5 and 3 on 4x4
+        for (int size : new int[] { 4, 5 }) {
+            Game empty = new GameImpl(size);
+            expect(0xFF, Symmetry.symmetries(empty));
+            int[] cells = new int[size * size];
+            for (int cell = 0; cell < cells.length; cell++)
+                cells[cell] = cell;
+            expect(size == 5 ? 6 : 3, Symmetry.distinctMoves(empty, cells, cells.length));
+        }
+
+        // A piece on the diagonal leaves only the reflection in that diagonal
+        Game game = new GameImpl(5);
+        game.makeMove(new MoveImpl(1, 1));
+        expect(0b10001, Symmetry.symmetries(game));
+        int[] cells = { 2, 10, 7, 0 };
+        expect(3, Symmetry.distinctMoves(game, cells, 4));
+        expect(2, cells[0]);
+        expect(7, cells[1]);
+        expect(0, cells[2]);
+
+        // The hash of an image of a grid is the hash of the transformed grid
+        Grid grid = new GridImpl(5);
+        grid.setPiece(0, 1, PieceColour.WHITE);
+        grid.setPiece(3, 2, PieceColour.BLACK);
+        grid.setPiece(4, 4, PieceColour.WHITE);
+        long[] hashes = Symmetry.hashes(grid, PieceColour.BLACK, true);
+        expect(16, hashes.length);
+        int wrong = 0;
+        for (int t = 0; t < 16; t++) {
+            Grid image = Symmetry.transform(t, grid);
+            PieceColour toMove = Symmetry.transform(t, PieceColour.BLACK);
+            if (hashes[t] != Zobrist.hash(image, toMove)) wrong++;
+            // Transforming back gives the original grid
+            if (!Symmetry.transform(Symmetry.inverse(t), image).toString().equals(grid.toString())) wrong++;
+        }
+        expect(0, wrong);
+
+        // Swapping the colours and the player to move gives the same canonical hash
+        // with colour swaps, and a different one without
+        Grid swapped = new GridImpl(5);
+        swapped.setPiece(0, 1, PieceColour.BLACK);
+        swapped.setPiece(3, 2, PieceColour.WHITE);
+        swapped.setPiece(4, 4, PieceColour.BLACK);
+        expect(Symmetry.canonicalHash(grid, PieceColour.BLACK, true),
+                Symmetry.canonicalHash(swapped, PieceColour.WHITE, true));
+        expect(false, Symmetry.canonicalHash(grid, PieceColour.BLACK, false)
+                == Symmetry.canonicalHash(swapped, PieceColour.WHITE, false));
+
+        // The canonical transform maps a grid onto the canonical hash
+        int t = Symmetry.canonicalTransform(grid, PieceColour.BLACK, true);
+        expect(Symmetry.canonicalHash(grid, PieceColour.BLACK, true),
+                Zobrist.hash(Symmetry.transform(t, grid), Symmetry.transform(t, PieceColour.BLACK)));
+
+        checkAllTestsPassed();
+    }
+}